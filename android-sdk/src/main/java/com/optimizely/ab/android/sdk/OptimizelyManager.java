@@ -42,6 +42,7 @@ import com.optimizely.ab.android.odp.VuidManager;
 import com.optimizely.ab.android.sdk.cmab.CmabClientHelperAndroid;
 import com.optimizely.ab.android.sdk.cmab.DefaultCmabClient;
 import com.optimizely.ab.android.shared.DatafileConfig;
+import com.optimizely.ab.android.shared.WorkerScheduler;
 import com.optimizely.ab.android.user_profile.DefaultUserProfileService;
 import com.optimizely.ab.bucketing.UserProfileService;
 import com.optimizely.ab.cmab.client.CmabClient;
@@ -99,6 +100,7 @@ public class OptimizelyManager {
 
     @Nullable private OptimizelyStartListener optimizelyStartListener;
     private boolean returnInMainThreadFromAsyncInit = true;
+    @Nullable private OptlyActivityLifecycleCallbacks activityLifecycleCallbacks;
 
     @Nullable private final List<OptimizelyDecideOption> defaultDecideOptions;
     private String customSdkName = null;
@@ -461,18 +463,65 @@ public class OptimizelyManager {
         };
     }
 
-    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
-    void stop(@NonNull Activity activity, @NonNull OptlyActivityLifecycleCallbacks optlyActivityLifecycleCallbacks) {
-        stop(activity);
-        activity.getApplication().unregisterActivityLifecycleCallbacks(optlyActivityLifecycleCallbacks);
-    }
-
     public void stop(@NonNull Context context) {
         if (!isAndroidVersionSupported()) {
             return;
         }
 
         this.optimizelyStartListener = null;
+        unregisterActivityLifecycleCallbacks(context);
+    }
+
+    /**
+     * Follow activities to tell when the app goes to the background, once per manager
+     *
+     * @param context any {@link Context} instance
+     */
+    private synchronized void registerActivityLifecycleCallbacks(@NonNull Context context) {
+        Context appContext = context.getApplicationContext();
+        if (activityLifecycleCallbacks != null || !(appContext instanceof Application)) {
+            return;
+        }
+
+        // the activity that started the (async) initialization is already started and is not reported again
+        activityLifecycleCallbacks = new OptlyActivityLifecycleCallbacks(this, WorkerScheduler.isAppInForeground() ? 1 : 0);
+        ((Application) appContext).registerActivityLifecycleCallbacks(activityLifecycleCallbacks);
+    }
+
+    private synchronized void unregisterActivityLifecycleCallbacks(@NonNull Context context) {
+        Context appContext = context.getApplicationContext();
+        if (activityLifecycleCallbacks != null && appContext instanceof Application) {
+            ((Application) appContext).unregisterActivityLifecycleCallbacks(activityLifecycleCallbacks);
+            activityLifecycleCallbacks = null;
+        }
+    }
+
+    /**
+     * Called when the last started activity of the app is stopped.
+     * <p>
+     * The in-memory batch of the {@link BatchEventProcessor} is flushed to the event handler, which stores it
+     * and schedules a single drain of stored events instead of a work per event.
+     */
+    void onAppBackgrounded() {
+        if (eventHandler instanceof DefaultEventHandler) {
+            ((DefaultEventHandler) eventHandler).setAppInBackground(true);
+        }
+        if (eventProcessor instanceof BatchEventProcessor) {
+            try {
+                ((BatchEventProcessor) eventProcessor).flush();
+            } catch (Exception e) {
+                logger.warn("Unable to flush events on background", e);
+            }
+        }
+    }
+
+    /**
+     * Called when an activity of the app is started after the app was in the background.
+     */
+    void onAppForegrounded() {
+        if (eventHandler instanceof DefaultEventHandler) {
+            ((DefaultEventHandler) eventHandler).setAppInBackground(false);
+        }
     }
 
     /**
@@ -624,6 +673,7 @@ public class OptimizelyManager {
 
     private OptimizelyClient buildOptimizely(@NonNull Context context, @NonNull String datafile) throws ConfigParseException {
         EventHandler eventHandler = getEventHandler(context);
+        registerActivityLifecycleCallbacks(context);
 
         String sdkName = getSdkName(context);
         String sdkVersion = getSdkVersion();
@@ -691,13 +741,24 @@ public class OptimizelyManager {
         }
     }
 
+    /**
+     * Tells the {@link OptimizelyManager} when the app goes to the background (its last started activity is
+     * stopped) and back to the foreground.
+     */
     @RequiresApi(api = Build.VERSION_CODES.ICE_CREAM_SANDWICH)
     static class OptlyActivityLifecycleCallbacks implements Application.ActivityLifecycleCallbacks {
 
         @NonNull private OptimizelyManager optimizelyManager;
+        // seeded with the activity already visible when the callbacks were registered, so this is at least 0
+        private int startedActivities;
 
-        OptlyActivityLifecycleCallbacks(@NonNull OptimizelyManager optimizelyManager) {
+        /**
+         * @param optimizelyManager the manager to tell
+         * @param startedActivities the number of activities started before the callbacks were registered
+         */
+        OptlyActivityLifecycleCallbacks(@NonNull OptimizelyManager optimizelyManager, int startedActivities) {
             this.optimizelyManager = optimizelyManager;
+            this.startedActivities = startedActivities;
         }
 
         /**
@@ -715,7 +776,9 @@ public class OptimizelyManager {
          */
         @Override
         public void onActivityStarted(Activity activity) {
-            // NO-OP
+            if (startedActivities++ == 0) {
+                optimizelyManager.onAppForegrounded();
+            }
         }
 
         /**
@@ -742,7 +805,11 @@ public class OptimizelyManager {
          */
         @Override
         public void onActivityStopped(Activity activity) {
-            optimizelyManager.stop(activity, this);
+            startedActivities = Math.max(startedActivities - 1, 0);
+            // an activity recreated for a configuration change is started again right away
+            if (startedActivities == 0 && !activity.isChangingConfigurations()) {
+                optimizelyManager.onAppBackgrounded();
+            }
         }
 
         /**
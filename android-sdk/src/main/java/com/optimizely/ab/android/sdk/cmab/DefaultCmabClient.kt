@@ -18,6 +18,7 @@ import android.content.Context
 import androidx.annotation.VisibleForTesting
 import com.optimizely.ab.android.shared.Client
 import com.optimizely.ab.android.shared.OptlyStorage
+import com.optimizely.ab.android.shared.RequestBodyWriter
 import com.optimizely.ab.cmab.client.CmabClient
 import com.optimizely.ab.cmab.client.CmabFetchException
 import com.optimizely.ab.cmab.client.CmabInvalidResponseException
@@ -58,73 +59,77 @@ open class DefaultCmabClient : CmabClient {
         attributes: Map<String?, Any?>?,
         cmabUuid: String?
     ): String? {
-        val request: Client.Request<String?> = Client.Request {
-            var urlConnection: HttpURLConnection? = null
-            try {
-                val apiEndpoint = String.format(cmabClientHelper.cmabPredictionEndpoint, ruleId)
-
-                val requestBody: String =
-                    cmabClientHelper.buildRequestJson(userId, ruleId, attributes, cmabUuid)
-
-                logger.info("Fetching CMAB decision: {} with body: {}", apiEndpoint, requestBody)
-
-                val url = URL(apiEndpoint)
-                urlConnection = client.openConnection(url)
-                if (urlConnection == null) {
-                    logger.error("Error opening connection to $apiEndpoint")
-                    return@Request null
-                }
-
-                // set timeouts for releasing failed connections (default is 0 = no timeout).
-                urlConnection.connectTimeout = CONNECTION_TIMEOUT
-                urlConnection.readTimeout = READ_TIMEOUT
-
-                urlConnection.requestMethod = "POST"
-                urlConnection.setRequestProperty("content-type", "application/json")
-
-                urlConnection.doOutput = true
-                val outputStream = urlConnection.outputStream
-                outputStream.write(requestBody.toByteArray())
-                outputStream.flush()
-                outputStream.close()
-                val status = urlConnection.responseCode
-                if (status in 200..399) {
-                    val json = client.readStream(urlConnection)
-                    logger.debug("Successfully fetched CMAB decision: {}", json)
-
-                    if (!cmabClientHelper.validateResponse(json)) {
-                        logger.error(cmabClientHelper.invalidCmabFetchResponse)
-                        throw CmabInvalidResponseException(cmabClientHelper.invalidCmabFetchResponse)
+        val request = object : Client.Request<String?> {
+            // set when the last attempt should not be retried
+            @Volatile var notRetryable = false
+
+            override fun isNotRetryable(response: String?): Boolean = notRetryable
+
+            override fun execute(): String? {
+                var urlConnection: HttpURLConnection? = null
+                var responseReceived = false
+                notRetryable = false
+                try {
+                    val apiEndpoint = String.format(cmabClientHelper.cmabPredictionEndpoint, ruleId)
+
+                    val requestBody: String =
+                        cmabClientHelper.buildRequestJson(userId, ruleId, attributes, cmabUuid)
+
+                    logger.info("Fetching CMAB decision: {} with body: {}", apiEndpoint, requestBody)
+
+                    val url = URL(apiEndpoint)
+                    urlConnection = client.openConnection(url)
+                    if (urlConnection == null) {
+                        notRetryable = client.isCircuitOpen(url)
+                        logger.error("Error opening connection to $apiEndpoint")
+                        return null
                     }
 
-                    return@Request cmabClientHelper.parseVariationId(json)
-                } else {
-                    logger.debug("Failed to fetch CMAB decision for ruleId={} and userId={}: status={}", ruleId, userId, status)
-                    val errorMessage: String = java.lang.String.format(
-                        cmabClientHelper.cmabFetchFailed,
-                        urlConnection.responseMessage
-                    )
+                    // set timeouts for releasing failed connections (default is 0 = no timeout).
+                    urlConnection.connectTimeout = CONNECTION_TIMEOUT
+                    urlConnection.readTimeout = READ_TIMEOUT
+
+                    urlConnection.requestMethod = "POST"
+                    urlConnection.setRequestProperty("content-type", "application/json")
+
+                    urlConnection.doOutput = true
+                    RequestBodyWriter.write(urlConnection, requestBody, GZIP_THRESHOLD)
+                    val status = urlConnection.responseCode
+                    responseReceived = true
+                    if (status in 200..399) {
+                        val json = client.readStream(urlConnection)
+                        logger.debug("Successfully fetched CMAB decision: {}", json)
+
+                        if (!cmabClientHelper.validateResponse(json)) {
+                            logger.error(cmabClientHelper.invalidCmabFetchResponse)
+                            throw CmabInvalidResponseException(cmabClientHelper.invalidCmabFetchResponse)
+                        }
+
+                        return cmabClientHelper.parseVariationId(json)
+                    } else {
+                        logger.debug("Failed to fetch CMAB decision for ruleId={} and userId={}: status={}", ruleId, userId, status)
+                        val errorMessage: String = java.lang.String.format(
+                            cmabClientHelper.cmabFetchFailed,
+                            urlConnection.responseMessage
+                        )
+                        logger.error(errorMessage)
+                        throw CmabFetchException(errorMessage)
+                    }
+                } catch (e: CmabInvalidResponseException) {
+                    // Propagate validation exceptions as-is
+                    throw e
+                } catch (e: CmabFetchException) {
+                    // Propagate fetch exceptions as-is
+                    throw e
+                } catch (e: Exception) {
+                    logger.debug("Failed to fetch CMAB decision for ruleId={} and userId={}", ruleId, userId);
+                    val errorMessage: String =
+                        java.lang.String.format(cmabClientHelper.cmabFetchFailed, e.message)
                     logger.error(errorMessage)
                     throw CmabFetchException(errorMessage)
-                }
-            } catch (e: CmabInvalidResponseException) {
-                // Propagate validation exceptions as-is
-                throw e
-            } catch (e: CmabFetchException) {
-                // Propagate fetch exceptions as-is
-                throw e
-            } catch (e: Exception) {
-                logger.debug("Failed to fetch CMAB decision for ruleId={} and userId={}", ruleId, userId);
-                val errorMessage: String =
-                    java.lang.String.format(cmabClientHelper.cmabFetchFailed, e.message)
-                logger.error(errorMessage)
-                throw CmabFetchException(errorMessage)
-            } finally {
-                if (urlConnection != null) {
-                    try {
-                        urlConnection.disconnect()
-                    } catch (e: Exception) {
-                        logger.error("Error closing connection", e)
+                } finally {
+                    if (!client.releaseConnection(urlConnection, responseReceived)) {
+                        notRetryable = true
                     }
                 }
             }
@@ -146,6 +151,8 @@ open class DefaultCmabClient : CmabClient {
         // configurable connection timeout in milliseconds
         var CONNECTION_TIMEOUT = 10 * 1000
         var READ_TIMEOUT = 60 * 1000
+        // min request body size in bytes for gzip content encoding (disabled by default)
+        var GZIP_THRESHOLD = RequestBodyWriter.GZIP_DISABLED
 
         // cmab service retries twice with 1sec interval
 
@@ -25,7 +25,10 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests for {@link OptimizelyManager.OptlyActivityLifecycleCallbacks}
@@ -35,16 +38,58 @@ public class OptimizelyManagerOptlyActivityLifecycleCallbacksTest {
 
     @Mock OptimizelyManager optimizelyManager;
     @Mock Activity activity;
+    @Mock Activity otherActivity;
     private OptimizelyManager.OptlyActivityLifecycleCallbacks optlyActivityLifecycleCallbacks;
 
     @Before
     public void setup() {
-        optlyActivityLifecycleCallbacks = new OptimizelyManager.OptlyActivityLifecycleCallbacks(optimizelyManager);
+        optlyActivityLifecycleCallbacks = new OptimizelyManager.OptlyActivityLifecycleCallbacks(optimizelyManager, 0);
     }
 
     @Test
     public void onActivityStopped() {
+        optlyActivityLifecycleCallbacks.onActivityStarted(activity);
         optlyActivityLifecycleCallbacks.onActivityStopped(activity);
-        verify(optimizelyManager).stop(activity, optlyActivityLifecycleCallbacks);
+        verify(optimizelyManager).onAppBackgrounded();
+    }
+
+    @Test
+    public void onActivityStoppedWithAnotherActivityStarted() {
+        optlyActivityLifecycleCallbacks.onActivityStarted(activity);
+        optlyActivityLifecycleCallbacks.onActivityStarted(otherActivity);
+        optlyActivityLifecycleCallbacks.onActivityStopped(activity);
+        verify(optimizelyManager, never()).onAppBackgrounded();
+
+        optlyActivityLifecycleCallbacks.onActivityStopped(otherActivity);
+        verify(optimizelyManager).onAppBackgrounded();
+    }
+
+    @Test
+    public void onActivityStoppedWithActivityStartedBeforeRegistration() {
+        optlyActivityLifecycleCallbacks = new OptimizelyManager.OptlyActivityLifecycleCallbacks(optimizelyManager, 1);
+
+        // navigating from the activity that started the manager to another one
+        optlyActivityLifecycleCallbacks.onActivityStarted(otherActivity);
+        optlyActivityLifecycleCallbacks.onActivityStopped(activity);
+        verify(optimizelyManager, never()).onAppForegrounded();
+        verify(optimizelyManager, never()).onAppBackgrounded();
+
+        optlyActivityLifecycleCallbacks.onActivityStopped(otherActivity);
+        verify(optimizelyManager).onAppBackgrounded();
+    }
+
+    @Test
+    public void onActivityStoppedForConfigurationChange() {
+        when(activity.isChangingConfigurations()).thenReturn(true);
+        optlyActivityLifecycleCallbacks.onActivityStarted(activity);
+        optlyActivityLifecycleCallbacks.onActivityStopped(activity);
+        verify(optimizelyManager, never()).onAppBackgrounded();
+    }
+
+    @Test
+    public void onActivityStarted() {
+        optlyActivityLifecycleCallbacks.onActivityStarted(activity);
+        optlyActivityLifecycleCallbacks.onActivityStarted(otherActivity);
+        verify(optimizelyManager, times(1)).onAppForegrounded();
     }
 }
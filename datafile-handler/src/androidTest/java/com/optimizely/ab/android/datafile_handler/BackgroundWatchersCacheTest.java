@@ -109,7 +109,7 @@ public class BackgroundWatchersCacheTest {
         Cache cache = mock(Cache.class);
         BackgroundWatchersCache backgroundWatchersCache = new BackgroundWatchersCache(cache, logger);
         // Cause a JSONException to be thrown
-        when(cache.load(BackgroundWatchersCache.BACKGROUND_WATCHERS_FILE_NAME)).thenReturn("{");
+        when(cache.load(BackgroundWatchersCache.BACKGROUND_WATCHERS_FILE_NAME, true)).thenReturn("{");
 
         assertFalse(backgroundWatchersCache.setIsWatching(new DatafileConfig("1", null), true));
         verify(logger).error(contains("Unable to update watching state for project id"), any(JSONException.class));
@@ -127,7 +127,7 @@ public class BackgroundWatchersCacheTest {
         Cache cache = mock(Cache.class);
         BackgroundWatchersCache backgroundWatchersCache = new BackgroundWatchersCache(cache, logger);
         // Cause a JSONException to be thrown
-        when(cache.load(BackgroundWatchersCache.BACKGROUND_WATCHERS_FILE_NAME)).thenReturn(null);
+        when(cache.load(BackgroundWatchersCache.BACKGROUND_WATCHERS_FILE_NAME, true)).thenReturn(null);
         assertFalse(backgroundWatchersCache.setIsWatching(new DatafileConfig("1", null), true));
         verify(logger).info("Creating background watchers file {}.", BackgroundWatchersCache.BACKGROUND_WATCHERS_FILE_NAME);
     }
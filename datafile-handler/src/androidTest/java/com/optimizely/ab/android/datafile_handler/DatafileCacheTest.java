@@ -28,9 +28,12 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
@@ -72,11 +75,26 @@ public class DatafileCacheTest {
         assertNull(datafileCache.load());
     }
 
+    @Test
+    public void saveStreamKeepsCachedDatafileWhenInvalid() {
+        String datafile = "{\"revision\":\"1\"}";
+        assertTrue(datafileCache.save(new ByteArrayInputStream(datafile.getBytes(StandardCharsets.UTF_8))));
+
+        assertFalse(datafileCache.save(new ByteArrayInputStream("<html>error</html>".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(datafileCache.save(new ByteArrayInputStream("{\"revision\":".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(datafileCache.save(new ByteArrayInputStream("{\"revision\" \"2\"}".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(datafileCache.save(new ByteArrayInputStream("[{\"revision\":\"2\"}]".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(datafileCache.save(new ByteArrayInputStream("{\"revision\":\"2\"}<html>".getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(datafile, datafileCache.loadString());
+        assertTrue(datafileCache.delete());
+    }
+
     @Test
     public void loadJsonException() throws IOException {
         Cache cache = mock(Cache.class);
         DatafileCache datafileCache = new DatafileCache("1", cache, logger);
-        when(cache.load(datafileCache.getFileName())).thenReturn("{");
+        when(cache.load(datafileCache.getFileName(), true)).thenReturn("{");
         assertNull(datafileCache.load());
         verify(logger).error(contains("Unable to parse data file"), any(JSONException.class));
     }
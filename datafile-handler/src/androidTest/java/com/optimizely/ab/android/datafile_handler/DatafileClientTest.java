@@ -28,7 +28,9 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -42,6 +44,7 @@ import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -87,7 +90,7 @@ public class DatafileClientTest {
         verify(logger).info("Requesting data file from {}", url);
         verify(client).saveLastModified(urlConnection);
         verify(client).readStream(urlConnection);
-        verify(urlConnection).disconnect();
+        verify(client).releaseConnection(urlConnection, true);
     }
 
     /**
@@ -160,7 +163,7 @@ public class DatafileClientTest {
         verify(logger).info("Requesting data file from {}", url1);
         verify(client).saveLastModified(urlConnection);
         verify(client).readStream(urlConnection);
-        verify(urlConnection).disconnect();
+        verify(client).releaseConnection(urlConnection, true);
 
         // second call returns 304 so the response is a empty string.
         datafileClient.request(url1.toString());
@@ -176,7 +179,7 @@ public class DatafileClientTest {
         assertEquals("", response);
 
         verify(logger).info("Data file has not been modified on the cdn");
-        verify(urlConnection, times(2)).disconnect();
+        verify(client, times(2)).releaseConnection(urlConnection, true);
 
         datafileClient.request(url2.toString());
 
@@ -193,7 +196,7 @@ public class DatafileClientTest {
         verify(logger, times(2)).info("Requesting data file from {}", url1);
         verify(client).saveLastModified(urlConnection2);
         verify(client).readStream(urlConnection2);
-        verify(urlConnection2).disconnect();
+        verify(client).releaseConnection(urlConnection2, true);
     }
 
 
@@ -219,7 +222,52 @@ public class DatafileClientTest {
         verify(logger).info("Requesting data file from {}", url);
         verify(client).saveLastModified(urlConnection);
         verify(client).readStream(urlConnection);
-        verify(urlConnection).disconnect();
+        verify(client).releaseConnection(urlConnection, true);
+    }
+
+    @Test
+    public void request200StreamsToCache() throws IOException {
+        URL url = new URL(new DatafileConfig("1", null).getUrl());
+        InputStream in = new ByteArrayInputStream("{}".getBytes());
+        DatafileCache datafileCache = mock(DatafileCache.class);
+        when(client.openConnection(url)).thenReturn(urlConnection);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        when(client.getInputStream(urlConnection)).thenReturn(in);
+        when(datafileCache.save(in)).thenReturn(true);
+        when(datafileCache.loadString()).thenReturn("{}");
+
+        datafileClient.request(url.toString(), datafileCache);
+
+        ArgumentCaptor<Client.Request> captor1 = ArgumentCaptor.forClass(Client.Request.class);
+        verify(client).execute(captor1.capture(), anyInt(), anyInt());
+        assertEquals("{}", captor1.getValue().execute());
+
+        verify(urlConnection).setRequestProperty("Accept-Encoding", "gzip");
+        verify(datafileCache).save(in);
+        verify(client).saveLastModified(urlConnection);
+        verify(client, never()).readStream(urlConnection);
+        verify(client).releaseConnection(urlConnection, true);
+    }
+
+    @Test
+    public void request200CacheSaveFails() throws IOException {
+        URL url = new URL(new DatafileConfig("1", null).getUrl());
+        InputStream in = new ByteArrayInputStream("{}".getBytes());
+        DatafileCache datafileCache = mock(DatafileCache.class);
+        when(client.openConnection(url)).thenReturn(urlConnection);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        when(client.getInputStream(urlConnection)).thenReturn(in);
+        when(datafileCache.save(in)).thenReturn(false);
+
+        datafileClient.request(url.toString(), datafileCache);
+
+        ArgumentCaptor<Client.Request> captor1 = ArgumentCaptor.forClass(Client.Request.class);
+        verify(client).execute(captor1.capture(), anyInt(), anyInt());
+        assertNull(captor1.getValue().execute());
+
+        verify(logger).warn("Unable to save new datafile");
+        verify(client, never()).saveLastModified(urlConnection);
+        verify(client).releaseConnection(urlConnection, true);
     }
 
     @Test
@@ -244,7 +292,7 @@ public class DatafileClientTest {
         verify(logger).info("Requesting data file from {}", url);
         verify(client).saveLastModified(urlConnection);
         verify(client).readStream(urlConnection);
-        verify(urlConnection).disconnect();
+        verify(client).releaseConnection(urlConnection, true);
     }
 
     @Test
@@ -264,7 +312,7 @@ public class DatafileClientTest {
         assertNull(response);
 
         verify(logger).error("Unexpected response from data file cdn, status: {}", 300);
-        verify(urlConnection).disconnect();
+        verify(client).releaseConnection(urlConnection, true);
     }
 
     @Test
@@ -285,8 +333,8 @@ public class DatafileClientTest {
         assertNull(response);
 
         verify(logger).error(contains("Error making request"), any(IOException.class));
-        verify(urlConnection).disconnect();
-        verify(urlConnection).disconnect();
+        verify(client).releaseConnection(urlConnection, false);
+        verify(client).releaseConnection(urlConnection, false);
     }
 
     @Test
@@ -318,7 +366,7 @@ public class DatafileClientTest {
         verify(logger).error(contains("Error making request"), any(IOException.class));
         verify(urlConnection).setConnectTimeout(10*1000);
         verify(urlConnection).setReadTimeout(60*1000);
-        verify(urlConnection).disconnect();
+        verify(client).releaseConnection(urlConnection, false);
     }
 
 }
@@ -35,9 +35,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -48,6 +52,7 @@ import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.mock;
@@ -61,6 +66,8 @@ import static org.mockito.Mockito.when;
 @RunWith(AndroidJUnit4.class)
 public class DatafileLoaderTest {
 
+    private static final String DATAFILE_URL = "https://cdn.optimizely.com/datafiles/1.json";
+
     private DatafileCache datafileCache;
     private DatafileClient datafileClient;
     private Client client;
@@ -84,14 +91,14 @@ public class DatafileLoaderTest {
     }
 
     @Test
-    public void loadFromCDNWhenNoCachedFile() throws MalformedURLException, JSONException {
+    public void loadFromCDNWhenNoCachedFile() throws IOException, JSONException {
         final ExecutorService executor = Executors.newSingleThreadExecutor();
         DatafileLoader datafileLoader =
                 new DatafileLoader(context, datafileClient, datafileCache, logger);
 
-        when(client.execute(any(Client.Request.class), anyInt(), anyInt())).thenReturn("{}");
+        respondWith(200, "{}");
 
-        datafileLoader.getDatafile("1", datafileLoadedListener);
+        datafileLoader.getDatafile(DATAFILE_URL, datafileLoadedListener);
         try {
             executor.awaitTermination(5, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
@@ -183,20 +190,19 @@ public class DatafileLoaderTest {
         DatafileLoader datafileLoader =
                 new DatafileLoader(context, datafileClient, datafileCache, logger);
 
-        when(client.execute(any(Client.Request.class), anyInt(), anyInt())).thenReturn("{}");
+        respondWith(200, "{}");
         when(cache.exists(datafileCache.getFileName())).thenReturn(true);
-        when(cache.delete(datafileCache.getFileName())).thenReturn(false);
-        when(cache.save(datafileCache.getFileName(), "{}")).thenReturn(false);
+        when(cache.save(eq(datafileCache.getFileName()), any(InputStream.class), eq(true), any(Cache.Validator.class))).thenReturn(false);
 
-        datafileLoader.getDatafile("warningsAreLogged", datafileLoadedListener);
+        datafileLoader.getDatafile(DATAFILE_URL, datafileLoadedListener);
         try {
             executor.awaitTermination(5, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             fail();
         }
 
-        verify(logger).warn("Unable to delete old datafile");
         verify(logger).warn("Unable to save new datafile");
+        verify(client, never()).saveLastModified(any(HttpURLConnection.class));
         verify(datafileLoadedListener, atMost(1)).onDatafileLoaded("{}");
     }
 
@@ -211,9 +217,9 @@ public class DatafileLoaderTest {
                 new DatafileLoader(context, datafileClient, datafileCache, logger);
 
         when(client.execute(any(Client.Request.class), anyInt(), anyInt())).thenReturn("{}");
-        when(cache.save(datafileCache.getFileName(), "{}")).thenReturn(true);
+        when(cache.save(datafileCache.getFileName(), "{}", true)).thenReturn(true);
         when(cache.exists(datafileCache.getFileName())).thenReturn(true);
-        when(cache.load(datafileCache.getFileName())).thenReturn("{}");
+        when(cache.load(datafileCache.getFileName(), true)).thenReturn("{}");
 
         datafileLoader.getDatafile("debugLogged", datafileLoadedListener);
         try {
@@ -242,9 +248,9 @@ public class DatafileLoaderTest {
                 new DatafileLoader(context, datafileClient, datafileCache, logger);
 
         when(client.execute(any(Client.Request.class), anyInt(), anyInt())).thenReturn("{}");
-        when(cache.save(datafileCache.getFileName(), "{}")).thenReturn(false);
+        when(cache.save(datafileCache.getFileName(), "{}", true)).thenReturn(false);
         when(cache.exists(datafileCache.getFileName())).thenReturn(false);
-        when(cache.load(datafileCache.getFileName())).thenReturn("{}");
+        when(cache.load(datafileCache.getFileName(), true)).thenReturn("{}");
 
         datafileLoader.getDatafile("downloadAllowedNoCache", datafileLoadedListener);
         datafileLoader.getDatafile("downloadAllowedNoCache", datafileLoadedListener);
@@ -271,8 +277,8 @@ public class DatafileLoaderTest {
         when(cache.exists(datafileCache.getFileName())).thenReturn(true);
         when(cache.delete(datafileCache.getFileName())).thenReturn(true);
         when(cache.exists(datafileCache.getFileName())).thenReturn(true);
-        when(cache.load(datafileCache.getFileName())).thenReturn("{}");
-        when(cache.save(datafileCache.getFileName(), "{}")).thenReturn(true);
+        when(cache.load(datafileCache.getFileName(), true)).thenReturn("{}");
+        when(cache.save(datafileCache.getFileName(), "{}", true)).thenReturn(true);
 
         datafileLoader.getDatafile("debugLoggedMultiThreaded", datafileLoadedListener);
 
@@ -294,6 +300,19 @@ public class DatafileLoaderTest {
     }
 
 
+    /**
+     * Runs requests made by the {@link DatafileClient} against a connection with the given response
+     */
+    private HttpURLConnection respondWith(int status, String body) throws IOException {
+        HttpURLConnection urlConnection = mock(HttpURLConnection.class);
+        when(urlConnection.getResponseCode()).thenReturn(status);
+        when(client.openConnection(any(URL.class))).thenReturn(urlConnection);
+        when(client.getInputStream(urlConnection)).thenReturn(new ByteArrayInputStream(body.getBytes()));
+        when(client.execute(any(Client.Request.class), anyInt(), anyInt())).thenAnswer(invocation ->
+                ((Client.Request) invocation.getArgument(0)).execute());
+        return urlConnection;
+    }
+
     private void setTestDownloadFrequency(DatafileLoader datafileLoader, long value) {
         try {
             Field betweenDownloadsMilli = DatafileLoader.class.getDeclaredField("minTimeBetweenDownloadsMilli");
@@ -152,7 +152,7 @@ class BackgroundWatchersCache {
      */
     @Nullable
     private JSONObject load() throws JSONException {
-        String backGroundWatchersFile = cache.load(BACKGROUND_WATCHERS_FILE_NAME);
+        String backGroundWatchersFile = cache.load(BACKGROUND_WATCHERS_FILE_NAME, true);
         if (backGroundWatchersFile == null) {
             backGroundWatchersFile = "{}";
             logger.info("Creating background watchers file {}.", BACKGROUND_WATCHERS_FILE_NAME);
@@ -176,7 +176,7 @@ class BackgroundWatchersCache {
      */
     private boolean save(String backgroundWatchersJson) {
         logger.info("Saving background watchers file {}.", BACKGROUND_WATCHERS_FILE_NAME);
-        boolean saved = cache.save(BACKGROUND_WATCHERS_FILE_NAME, backgroundWatchersJson);
+        boolean saved = cache.save(BACKGROUND_WATCHERS_FILE_NAME, backgroundWatchersJson, true);
         if (saved) {
             logger.info("Saved background watchers file {}.", BACKGROUND_WATCHERS_FILE_NAME);
         } else {
@@ -16,6 +16,9 @@
 
 package com.optimizely.ab.android.datafile_handler;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
@@ -27,13 +30,35 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Abstracts the actual datafile to a cached file containing the JSONObject as a string.
+ * <p>
+ * Saves replace the file atomically with a checksum, so a loaded datafile is either the previous or the new one,
+ * never a partial write.
  */
 public class DatafileCache {
 
     private static final String FILENAME = "optly-data-file-%s.json";
 
+    // a downloaded datafile only replaces the cached one if it is a complete JSON object, checked token by token
+    // while it is read, without holding the datafile or its parsed objects in memory
+    private static final Cache.Validator DATAFILE_VALIDATOR = new Cache.Validator() {
+        @Override
+        public boolean isValid(@NonNull InputStream data) throws IOException {
+            JsonReader reader = new JsonReader(new InputStreamReader(data, StandardCharsets.UTF_8));
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return false;
+            }
+            reader.skipValue();
+            return reader.peek() == JsonToken.END_DOCUMENT;
+        }
+    };
+
     @NonNull private final Cache cache;
     @NonNull private final String filename;
     @NonNull private final Logger logger;
@@ -81,7 +106,7 @@ public class DatafileCache {
      */
     @Nullable
     public JSONObject load() {
-        String datafile = cache.load(filename);
+        String datafile = cache.load(filename, true);
 
         if (datafile == null) {
             return null;
@@ -94,13 +119,58 @@ public class DatafileCache {
         }
     }
 
+    /**
+     * Loads the datafile from cache without parsing it.
+     * <p>
+     * Only checks that the datafile is a complete JSON object, the config parser reports any other problem.
+     * @return the datafile if it exists or null if it doesn't or is truncated
+     */
+    @Nullable
+    public String loadString() {
+        String datafile = cache.load(filename, true);
+
+        if (datafile == null) {
+            return null;
+        }
+        if (!isJSONObject(datafile)) {
+            logger.error("Cached data file is not a JSON object");
+            return null;
+        }
+        return datafile;
+    }
+
+    private static boolean isJSONObject(@NonNull String datafile) {
+        // checks the first and last non-whitespace characters, without copying the datafile like trim()
+        int start = 0;
+        int end = datafile.length() - 1;
+        while (start <= end && Character.isWhitespace(datafile.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(datafile.charAt(end))) {
+            end--;
+        }
+        return start < end && datafile.charAt(start) == '{' && datafile.charAt(end) == '}';
+    }
+
     /**
      * Save a datafile to cache.
      * @param dataFile to write to cache
      * @return true if successful.
      */
     public boolean save(String dataFile) {
-        return cache.save(filename, dataFile);
+        return cache.save(filename, dataFile, true);
+    }
+
+    /**
+     * Save a datafile to cache from a stream, without reading it into memory while it is written.
+     * <p>
+     * The saved datafile replaces the cached one only if it parses as a JSON object, so an error page or a
+     * truncated download leaves the cached datafile in place.
+     * @param dataFile the stream to write to cache, left open
+     * @return true if successful, false if the datafile could not be saved or is not valid.
+     */
+    public boolean save(InputStream dataFile) {
+        return cache.save(filename, dataFile, true, DATAFILE_VALIDATOR);
     }
 
     public boolean equals(Object o) {
@@ -25,6 +25,8 @@ import com.optimizely.ab.android.shared.Client;
 
 import org.slf4j.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 
@@ -60,8 +62,8 @@ public class DatafileClient {
      * Optimizely datafile and the response code will be 200.
      *
      * If the datafile has not been modified since last time our local
-     * datafile was modified there will be no response body and the
-     * response code will be 304.
+     * datafile was modified, or still has the ETag of our local datafile,
+     * there will be no response body and the response code will be 304.
      *
      * @param urlString the CDN url of an Optimizely datafile
      *
@@ -69,20 +71,47 @@ public class DatafileClient {
      */
     @Nullable
     public String request(final String urlString) {
+        return request(urlString, null);
+    }
+
+    /**
+     * Same as {@link #request(String)}, but a modified datafile is streamed from the response
+     * to the {@link DatafileCache} and then loaded from it, so the download is not held in memory.
+     *
+     * @param urlString the CDN url of an Optimizely datafile
+     * @param datafileCache the cache to save a modified datafile to, or null to read it into memory
+     *
+     * @return a valid datafile, null, or an empty string (on 304 responses)
+     */
+    @Nullable
+    public String request(final String urlString, @Nullable final DatafileCache datafileCache) {
         Client.Request<String> request = new Client.Request<String>() {
+            // set when the last attempt should not be retried
+            private volatile boolean notRetryable;
+
+            @Override
+            public boolean isNotRetryable(String response) {
+                return notRetryable;
+            }
+
             @Override
             public String execute() {
                 HttpURLConnection urlConnection = null;
+                boolean responseReceived = false;
+                notRetryable = false;
                 try {
                     URL url = new URL(urlString);
                     logger.info("Requesting data file from {}", url);
                     urlConnection = client.openConnection(url);
 
                     if (urlConnection == null) {
+                        notRetryable = client.isCircuitOpen(url);
                         return null;
                     }
 
                     client.setIfModifiedSince(urlConnection);
+                    // datafiles are large JSON documents that compress to a fraction of their size
+                    urlConnection.setRequestProperty("Accept-Encoding", "gzip");
                     // set timeouts for releasing failed connections (default is 0 = no timeout).
                     urlConnection.setConnectTimeout(CONNECTION_TIMEOUT);
                     urlConnection.setReadTimeout(READ_TIMEOUT);
@@ -90,9 +119,13 @@ public class DatafileClient {
                     urlConnection.connect();
 
                     int status = urlConnection.getResponseCode();
+                    responseReceived = true;
                     if (status >= 200 && status < 300) {
-                        client.saveLastModified(urlConnection);
-                        return client.readStream(urlConnection);
+                        if (datafileCache == null) {
+                            client.saveLastModified(urlConnection);
+                            return client.readStream(urlConnection);
+                        }
+                        return saveToCache(urlConnection, datafileCache);
                     } else if (status == 304) {
                         logger.info("Data file has not been modified on the cdn");
                         return "";
@@ -104,13 +137,8 @@ public class DatafileClient {
                     logger.error("Error making request", e);
                     return null;
                 } finally {
-                    if (urlConnection != null) {
-                        try {
-                            urlConnection.disconnect();
-                        }
-                        catch (Exception e) {
-                            logger.error("Error closing connection", e);
-                        }
+                    if (!client.releaseConnection(urlConnection, responseReceived)) {
+                        notRetryable = true;
                     }
                 }
             }
@@ -118,4 +146,26 @@ public class DatafileClient {
 
         return client.execute(request, REQUEST_BACKOFF_TIMEOUT, REQUEST_RETRIES_POWER);
     }
+
+    @Nullable
+    private String saveToCache(@NonNull HttpURLConnection urlConnection, @NonNull DatafileCache datafileCache)
+            throws IOException {
+        InputStream in = client.getInputStream(urlConnection);
+        boolean saved;
+        try {
+            saved = datafileCache.save(in);
+        } finally {
+            in.close();
+        }
+        if (!saved) {
+            logger.warn("Unable to save new datafile");
+            return null;
+        }
+        String datafile = datafileCache.loadString();
+        if (datafile != null) {
+            // only saved with a complete datafile, so a failed download is requested again in full
+            client.saveLastModified(urlConnection);
+        }
+        return datafile;
+    }
 }
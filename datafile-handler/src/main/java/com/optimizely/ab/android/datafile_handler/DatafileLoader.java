@@ -23,9 +23,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
+import com.optimizely.ab.android.shared.Client;
 import com.optimizely.ab.android.shared.OptlyStorage;
 
-import org.json.JSONObject;
 import org.slf4j.Logger;
 
 import java.util.Date;
@@ -94,25 +94,15 @@ public class DatafileLoader {
         executorService.execute(new Runnable() {
             @Override
             public void run() {
-                // if there is a problem with the cached datafile, set last modified to 1970
-                if (!datafileCache.exists() || (datafileCache.exists() && datafileCache.load() == null)) {
+                // if there is a problem with the cached datafile, set last modified to 1970 and drop the etag
+                if (!datafileCache.exists() || (datafileCache.exists() && datafileCache.loadString() == null)) {
                     // create a wrapper for application context default storage.
                     OptlyStorage storage = new OptlyStorage(context);
-                    // set the last modified for this url to 1 millisecond past Jan 1, 1970.
-                    storage.saveLong(datafileUrl, 1);
+                    Client.clearLastModified(storage, datafileUrl);
                 }
-                String dataFile = datafileClient.request(datafileUrl);
-                if (dataFile != null && !dataFile.isEmpty()) {
-                    if (datafileCache.exists()) {
-                        if (!datafileCache.delete()) {
-                            logger.warn("Unable to delete old datafile");
-                        }
-                    }
-                    if (!datafileCache.save(dataFile)) {
-                        logger.warn("Unable to save new datafile");
-                    }
-                }
-                else {
+                // a new datafile is streamed to the cache by the client
+                String dataFile = datafileClient.request(datafileUrl, datafileCache);
+                if (dataFile == null || dataFile.isEmpty()) {
                     String cachedDatafile = getCachedDatafile();
                     if (cachedDatafile != null) {
                         dataFile = cachedDatafile;
@@ -148,13 +138,6 @@ public class DatafileLoader {
     }
 
     private String getCachedDatafile() {
-        String dataFile = null;
-
-        JSONObject jsonFile = datafileCache.load();
-        if (jsonFile != null) {
-            dataFile = jsonFile.toString();
-        }
-
-        return dataFile;
+        return datafileCache.loadString();
     }
 }
@@ -31,7 +31,6 @@ import com.optimizely.ab.config.ProjectConfig;
 import com.optimizely.ab.config.ProjectConfigManager;
 import com.optimizely.ab.config.parser.ConfigParseException;
 
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -144,13 +143,13 @@ public class DefaultDatafileHandler implements DatafileHandler, ProjectConfigMan
             public void onEvent(int event, @Nullable String path) {
 
                 logger.debug("EVENT: " + String.valueOf(event) + " " + path + " (" + datafileCache.getFileName() + ")");
-                if (event == MODIFY && path.equals(datafileCache.getFileName())) {
-                    JSONObject newConfig = datafileCache.load();
-                    if (newConfig == null) {
+                // every save renames its temporary file over the cache file, so the file is never modified in place
+                if (event == MOVED_TO && datafileCache.getFileName().equals(path)) {
+                    String config = datafileCache.loadString();
+                    if (config == null) {
                         logger.error("Cached datafile is empty or corrupt");
                         return;
                     }
-                    String config = newConfig.toString();
                     setDatafile(config);
                     if (listener != null) {
                         listener.onDatafileLoaded(config);
@@ -222,7 +221,7 @@ public class DefaultDatafileHandler implements DatafileHandler, ProjectConfigMan
                 LoggerFactory.getLogger(DatafileCache.class)
         );
 
-        datafileCache.delete();
+        // replaces the cached datafile in one step, deleting it first would leave no datafile after a crash
         datafileCache.save(dataFile);
     }
 
@@ -240,12 +239,7 @@ public class DefaultDatafileHandler implements DatafileHandler, ProjectConfigMan
                 LoggerFactory.getLogger(DatafileCache.class)
         );
 
-        JSONObject datafile = datafileCache.load();
-        if (datafile != null) {
-            return datafile.toString();
-        }
-
-        return null;
+        return datafileCache.loadString();
     }
 
     /**
@@ -20,6 +20,13 @@ import android.content.Context;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.work.Configuration;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.testing.SynchronousExecutor;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import com.optimizely.ab.android.shared.WorkerScheduler;
 
 import com.optimizely.ab.event.LogEvent;
 import com.optimizely.ab.event.internal.payload.EventBatch;
@@ -27,13 +34,26 @@ import com.optimizely.ab.event.internal.payload.EventBatch;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.slf4j.Logger;
 
 import java.net.MalformedURLException;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests {@link DefaultEventHandler}
@@ -75,4 +95,88 @@ public class DefaultEventHandlerTest {
         verify(logger).info("Sent url {} to the event handler service (with retry interval of {} seconds)", "http://www.foo.com", 60L);
     }
 
+    @Test
+    public void dispatchEventCoalesced() throws Exception {
+        WorkManagerTestInitHelper.initializeTestWorkManager(context,
+                new Configuration.Builder().setExecutor(new SynchronousExecutor()).build());
+        WorkManager workManager = WorkManager.getInstance(context);
+        context.deleteDatabase(String.format(EventSQLiteOpenHelper.DB_NAME, "1"));
+        EventWorker.drainQueued.set(false);
+        // drains wait for the network in the test driver, and events are not sent in process
+        WorkerScheduler.requestOnlyWhenConnected = true;
+        eventHandler.setCoalescingEnabled(true);
+        eventHandler.setAppInBackground(true);
+
+        for (int i = 0; i < 3; i++) {
+            eventHandler.dispatchEvent(new LogEvent(LogEvent.RequestMethod.POST, url, new HashMap<String, String>(), new EventBatch()));
+        }
+
+        // a burst of events is stored and drained by a single work
+        List<WorkInfo> drains = workManager.getWorkInfosForUniqueWork(EventWorker.drainWorkName).get();
+        assertEquals(1, drains.size());
+        assertEquals(WorkInfo.State.ENQUEUED, drains.get(0).getState());
+        EventDAO eventDAO = EventDAO.getInstance(context, "1", logger);
+        assertEquals(3, eventDAO.countEvents());
+
+        // once the drain started reading storage, an event stored later gets a drain after it
+        EventWorker.drainQueued.set(false);
+        eventHandler.dispatchEvent(new LogEvent(LogEvent.RequestMethod.POST, url, new HashMap<String, String>(), new EventBatch()));
+
+        drains = workManager.getWorkInfosForUniqueWork(EventWorker.drainWorkName).get();
+        assertEquals(2, drains.size());
+        assertEquals(4, eventDAO.countEvents());
+
+        eventDAO.closeDb();
+        EventWorker.drainQueued.set(false);
+        context.deleteDatabase(String.format(EventSQLiteOpenHelper.DB_NAME, "1"));
+    }
+
+    @Test
+    public void dispatchEventInProcessStoresEventFirst() throws Exception {
+        DefaultEventHandler handler = spy(eventHandler);
+        doReturn(true).when(handler).canDispatchInProcess();
+        EventDispatcher dispatcher = mock(EventDispatcher.class);
+        when(dispatcher.enqueue(url, "{}")).thenReturn(5L);
+        when(dispatcher.dispatchStored(anyLong())).thenReturn(true);
+        DefaultEventHandler.inProcessDispatcher = dispatcher;
+        LogEvent logEvent = mock(LogEvent.class);
+        when(logEvent.getEndpointUrl()).thenReturn(url);
+        when(logEvent.getBody()).thenReturn("{}");
+
+        // the SDK thread is busy, the caller does not wait on storage
+        final CountDownLatch sdkThreadBusy = new CountDownLatch(1);
+        WorkerScheduler.runInProcess(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sdkThreadBusy.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        try {
+            handler.dispatchEvent(logEvent);
+
+            verify(dispatcher, never()).enqueue(anyString(), anyString());
+        } finally {
+            sdkThreadBusy.countDown();
+        }
+
+        // the SDK thread stores the event, then sends the stored row
+        final CountDownLatch sdkThreadDone = new CountDownLatch(1);
+        WorkerScheduler.runInProcess(new Runnable() {
+            @Override
+            public void run() {
+                sdkThreadDone.countDown();
+            }
+        });
+        assertTrue(sdkThreadDone.await(10, TimeUnit.SECONDS));
+        InOrder inOrder = inOrder(dispatcher);
+        inOrder.verify(dispatcher).enqueue(url, "{}");
+        inOrder.verify(dispatcher).dispatchStored(5L);
+
+        DefaultEventHandler.inProcessDispatcher = null;
+    }
+
 }
@@ -0,0 +1,128 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.event_handler;
+
+import android.util.Pair;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests {@link EventBatcher}
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventBatcherTest {
+
+    private Logger logger;
+    private URL url1;
+    private URL url2;
+
+    @Before
+    public void setup() throws Exception {
+        logger = mock(Logger.class);
+        url1 = new URL("https://logx.optimizely.com/v1/events");
+        url2 = new URL("https://www.foo.com");
+    }
+
+    private static String batchBody(String revision, String visitorId) {
+        return "{\"account_id\":\"1\",\"project_id\":\"2\",\"revision\":\"" + revision + "\"," +
+                "\"visitors\":[{\"visitor_id\":\"" + visitorId + "\"}]}";
+    }
+
+    @Test
+    public void mergesEventsWithSameEndpointAndHeader() throws Exception {
+        List<Pair<Long, Event>> events = new ArrayList<>();
+        events.add(new Pair<>(1L, new Event(url1, batchBody("10", "a"))));
+        events.add(new Pair<>(2L, new Event(url1, batchBody("10", "b"))));
+        events.add(new Pair<>(3L, new Event(url1, batchBody("11", "c"))));
+        events.add(new Pair<>(4L, new Event(url2, batchBody("10", "d"))));
+
+        List<EventBatcher.Batch> batches = new EventBatcher(100000, logger).batch(events);
+
+        assertEquals(3, batches.size());
+        assertEquals(2, batches.get(0).ids.length);
+        assertEquals(1L, batches.get(0).ids[0]);
+        assertEquals(2L, batches.get(0).ids[1]);
+        JSONObject merged = new JSONObject(batches.get(0).event.getRequestBody());
+        assertEquals(2, merged.getJSONArray("visitors").length());
+        assertEquals("b", merged.getJSONArray("visitors").getJSONObject(1).getString("visitor_id"));
+        assertEquals(3L, batches.get(1).ids[0]);
+        assertEquals(url2, batches.get(2).event.getURL());
+    }
+
+    @Test
+    public void splitsBatchesAtMaxBytes() {
+        List<Pair<Long, Event>> events = new ArrayList<>();
+        for (long i = 1; i <= 5; i++) {
+            events.add(new Pair<>(i, new Event(url1, batchBody("10", "v" + i))));
+        }
+        int bodySize = events.get(0).second.getRequestBody().length();
+
+        List<EventBatcher.Batch> batches = new EventBatcher(bodySize * 2, logger).batch(events);
+
+        assertEquals(3, batches.size());
+        assertEquals(2, batches.get(0).ids.length);
+        assertEquals(2, batches.get(1).ids.length);
+        assertEquals(1, batches.get(2).ids.length);
+    }
+
+    @Test
+    public void sendsNonBatchBodiesAlone() {
+        Event event = new Event(url1, "bar=baz");
+        List<Pair<Long, Event>> events = new ArrayList<>();
+        events.add(new Pair<>(1L, event));
+        events.add(new Pair<>(2L, new Event(url1, batchBody("10", "a"))));
+
+        List<EventBatcher.Batch> batches = new EventBatcher(100000, logger).batch(events);
+
+        assertEquals(2, batches.size());
+        assertSame(event, batches.get(0).event);
+    }
+
+    @Test
+    public void keepsStorageOrderOfFirstRows() {
+        List<Pair<Long, Event>> events = new ArrayList<>();
+        events.add(new Pair<>(1L, new Event(url1, batchBody("10", "a"))));
+        events.add(new Pair<>(2L, new Event(url2, batchBody("10", "b"))));
+        events.add(new Pair<>(3L, new Event(url1, "bar=baz")));
+        events.add(new Pair<>(4L, new Event(url1, batchBody("10", "c"))));
+        events.add(new Pair<>(5L, new Event(url1, batchBody("10", "d"))));
+        int bodySize = events.get(0).second.getRequestBody().length();
+
+        List<EventBatcher.Batch> batches = new EventBatcher(bodySize * 2, logger).batch(events);
+
+        assertEquals(4, batches.size());
+        assertEquals(1L, batches.get(0).ids[0]);
+        assertEquals(4L, batches.get(0).ids[1]);
+        assertEquals(2L, batches.get(1).ids[0]);
+        assertEquals(3L, batches.get(2).ids[0]);
+        assertEquals(5L, batches.get(3).ids[0]);
+    }
+}
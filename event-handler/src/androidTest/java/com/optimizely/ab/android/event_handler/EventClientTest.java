@@ -89,6 +89,6 @@ public class EventClientTest {
         verify(logger).error(contains("Unable to send event"), any(Event.class), any(IOException.class));
         verify(urlConnection).setConnectTimeout(10*1000);
         verify(urlConnection).setReadTimeout(60*1000);
-        verify(urlConnection).disconnect();
+        verify(client).releaseConnection(urlConnection, false);
     }
 }
@@ -32,6 +32,7 @@ import org.slf4j.Logger;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.List;
+import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
@@ -115,4 +116,201 @@ public class EventDAOTest {
         assertFalse(eventDAO.removeEvent(2));
         verify(logger).error("Tried to remove an event id {} that does not exist", 2L);
     }
+
+    @Test
+    public void removeEvents() throws MalformedURLException {
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), "bar=baz" + i)));
+        }
+        assertEquals(2, eventDAO.removeEvents(new long[]{1, 3}));
+        verify(logger).info("Removed {} events from db", 2);
+
+        List<Pair<Long,Event>> stored = eventDAO.getEvents();
+        assertEquals(1, stored.size());
+        assertEquals(2, stored.get(0).first.longValue());
+    }
+
+    @Test
+    public void removeEventsInvalid() throws MalformedURLException {
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), "baz=baz")));
+        assertEquals(1, eventDAO.removeEvents(new long[]{1, 2}));
+        verify(logger).error("Tried to remove {} events but only {} existed", 2, 1);
+    }
+
+    @Test
+    public void getEventsPaged() throws MalformedURLException {
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), "bar=baz" + i)));
+        }
+
+        long now = System.currentTimeMillis();
+        List<Pair<Long,Event>> page1 = eventDAO.getDueEvents(EventType.UNKNOWN, 0, 2, now);
+        assertEquals(2, page1.size());
+        assertEquals(1, page1.get(0).first.longValue());
+        assertEquals(2, page1.get(1).first.longValue());
+
+        // rows removed while paging do not shift the next page
+        assertEquals(1, eventDAO.removeEvents(new long[]{1}));
+        List<Pair<Long,Event>> page2 = eventDAO.getDueEvents(EventType.UNKNOWN, 2, 2, now);
+        assertEquals(3, page2.get(0).first.longValue());
+        assertEquals(4, page2.get(1).first.longValue());
+
+        assertEquals(1, eventDAO.getDueEvents(EventType.UNKNOWN, 4, 2, now).size());
+        assertTrue(eventDAO.getDueEvents(EventType.UNKNOWN, 5, 2, now).isEmpty());
+    }
+
+    @Test
+    public void getDueEventsSkipsEventsBackingOff() throws MalformedURLException {
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), "bar=baz" + i)));
+        }
+        long now = System.currentTimeMillis();
+        eventDAO.recordFailedAttempts(new long[]{2}, now);
+
+        List<Pair<Long,Event>> due = eventDAO.getDueEvents(EventType.UNKNOWN, 0, 10, now);
+        assertEquals(2, due.size());
+        assertEquals(1, due.get(0).first.longValue());
+        assertEquals(3, due.get(1).first.longValue());
+
+        due = eventDAO.getDueEvents(EventType.UNKNOWN, 0, 10, now + EventDAO.RETRY_BACKOFF_MILLIS);
+        assertEquals(3, due.size());
+        assertEquals(3, eventDAO.countEvents());
+    }
+
+    @Test
+    public void recordRefusedAttemptsUsesLongBackoff() throws MalformedURLException {
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), "bar=baz1")));
+        long now = System.currentTimeMillis();
+        eventDAO.recordRefusedAttempts(new long[]{1}, now);
+
+        assertEquals(now + EventDAO.REFUSED_BACKOFF_MILLIS, eventDAO.getNextAttemptAt());
+        assertEquals(1, eventDAO.countEvents());
+    }
+
+    @Test
+    public void getNextAttemptAt() throws MalformedURLException {
+        assertEquals(-1, eventDAO.getNextAttemptAt());
+
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), "bar=baz1")));
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), "bar=baz2")));
+        assertEquals(0, eventDAO.getNextAttemptAt());
+
+        long now = System.currentTimeMillis();
+        eventDAO.recordFailedAttempts(new long[]{1, 2}, now);
+        assertEquals(now + EventDAO.RETRY_BACKOFF_MILLIS, eventDAO.getNextAttemptAt());
+    }
+
+    @Test
+    public void getEventsRemovesMalformedEvents() throws MalformedURLException {
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), "bar=baz" + i)));
+        }
+        EventSQLiteOpenHelper dbHelper = new EventSQLiteOpenHelper(context, "1", null, EventSQLiteOpenHelper.VERSION, logger);
+        dbHelper.getWritableDatabase().execSQL("UPDATE " + EventTable.NAME + " SET " + EventTable.Column.BODY +
+                " = x'00' WHERE " + EventTable._ID + " = 2");
+        dbHelper.close();
+
+        List<Pair<Long,Event>> stored = eventDAO.getEvents();
+        assertEquals(2, stored.size());
+        assertEquals(3, stored.get(1).first.longValue());
+        verify(logger).error("Dropping {} malformed events from storage", 1);
+        assertEquals(2, eventDAO.countEvents());
+    }
+
+    private static String eventBatch(String eventKey) {
+        return "{\"visitors\":[{\"snapshots\":[{\"events\":[{\"key\":\"" + eventKey + "\"}]}]}]}";
+    }
+
+    @Test
+    public void evictEventsOverMaxRows() throws MalformedURLException {
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), "bar=baz" + i)));
+        }
+
+        long now = System.currentTimeMillis();
+        assertEquals(2, eventDAO.evictEvents(new EventQueueLimits(3, -1, -1, EvictionPolicy.DROP_OLDEST), now));
+        List<Pair<Long,Event>> stored = eventDAO.getEvents();
+        assertEquals(3, stored.size());
+        assertEquals(3, stored.get(0).first.longValue());
+
+        assertEquals(1, eventDAO.evictEvents(new EventQueueLimits(2, -1, -1, EvictionPolicy.DROP_NEWEST), now));
+        stored = eventDAO.getEvents();
+        assertEquals(2, stored.size());
+        assertEquals(4, stored.get(1).first.longValue());
+    }
+
+    @Test
+    public void evictEventsByType() throws MalformedURLException {
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), eventBatch("purchase"))));
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), eventBatch(EventType.IMPRESSION_KEY))));
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), eventBatch("purchase"))));
+
+        long now = System.currentTimeMillis();
+        assertEquals(1, eventDAO.evictEvents(new EventQueueLimits(2, -1, -1, EvictionPolicy.DROP_BY_TYPE), now));
+        List<Pair<Long,Event>> stored = eventDAO.getEvents();
+        assertEquals(1, stored.get(0).first.longValue());
+        assertEquals(3, stored.get(1).first.longValue());
+    }
+
+    @Test
+    public void evictEventsByTypeDropsLowPriorityLanesFirst() throws MalformedURLException {
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), eventBatch("purchase"))));
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), "bar=baz")));
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), eventBatch(EventType.IMPRESSION_KEY))));
+
+        long now = System.currentTimeMillis();
+        assertEquals(2, eventDAO.evictEvents(new EventQueueLimits(1, -1, -1, EvictionPolicy.DROP_BY_TYPE), now));
+        List<Pair<Long,Event>> stored = eventDAO.getEvents();
+        assertEquals(1, stored.size());
+        assertEquals(1, stored.get(0).first.longValue());
+    }
+
+    @Test
+    public void getDueEventsByLane() throws MalformedURLException {
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), eventBatch(EventType.IMPRESSION_KEY))));
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), eventBatch("purchase"))));
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), eventBatch(EventType.IMPRESSION_KEY))));
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), eventBatch("purchase"))));
+
+        long now = System.currentTimeMillis();
+        List<Pair<Long,Event>> conversions = eventDAO.getDueEvents(EventType.CONVERSION, 0, 10, now);
+        assertEquals(2, conversions.size());
+        assertEquals(2, conversions.get(0).first.longValue());
+        assertEquals(4, conversions.get(1).first.longValue());
+
+        List<Pair<Long,Event>> impressions = eventDAO.getDueEvents(EventType.IMPRESSION, 1, 10, now);
+        assertEquals(1, impressions.size());
+        assertEquals(3, impressions.get(0).first.longValue());
+
+        assertTrue(eventDAO.getDueEvents(EventType.UNKNOWN, 0, 10, now).isEmpty());
+    }
+
+    @Test
+    public void countEventsByType() throws MalformedURLException {
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), eventBatch(EventType.IMPRESSION_KEY))));
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), eventBatch("purchase"))));
+        assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), eventBatch(EventType.IMPRESSION_KEY))));
+
+        Map<EventType, Long> counts = eventDAO.countEventsByType();
+        assertEquals(2, counts.get(EventType.IMPRESSION).longValue());
+        assertEquals(1, counts.get(EventType.CONVERSION).longValue());
+        assertEquals(0, counts.get(EventType.UNKNOWN).longValue());
+    }
+
+    @Test
+    public void evictEventsOverMaxAgeAndBytes() throws MalformedURLException {
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), "bar=baz" + i)));
+        }
+
+        long now = System.currentTimeMillis();
+        assertEquals(0, eventDAO.evictEvents(new EventQueueLimits(-1, -1, 60000, EvictionPolicy.DROP_OLDEST), now));
+        assertEquals(3, eventDAO.evictEvents(new EventQueueLimits(-1, -1, 60000, EvictionPolicy.DROP_OLDEST), now + 120000));
+
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(eventDAO.storeEvent(new Event(new URL("http://www.foo.com"), "bar=baz" + i)));
+        }
+        assertEquals(3, eventDAO.evictEvents(new EventQueueLimits(-1, 1, -1, EvictionPolicy.DROP_OLDEST), now));
+        assertEquals(0, eventDAO.countEvents());
+    }
 }
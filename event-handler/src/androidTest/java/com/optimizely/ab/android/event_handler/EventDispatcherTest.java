@@ -0,0 +1,303 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.event_handler;
+
+import android.util.Pair;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.optimizely.ab.android.shared.NetworkState;
+import com.optimizely.ab.android.shared.NetworkStateProvider;
+import com.optimizely.ab.android.shared.OptlyStorage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link EventDispatcher}
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventDispatcherTest {
+
+    private OptlyStorage optlyStorage;
+    private NetworkStateProvider networkStateProvider;
+    private EventDAO eventDAO;
+    private EventClient eventClient;
+    private EventDispatcher eventDispatcher;
+    private URL url;
+
+    @Before
+    public void setup() throws Exception {
+        optlyStorage = mock(OptlyStorage.class);
+        eventDAO = mock(EventDAO.class);
+        eventClient = mock(EventClient.class);
+        networkStateProvider = mock(NetworkStateProvider.class);
+        eventDispatcher = new EventDispatcher(ApplicationProvider.getApplicationContext(), optlyStorage, eventDAO,
+                eventClient, networkStateProvider, mock(Logger.class));
+        url = new URL("https://logx.optimizely.com/v1/events");
+    }
+
+    private static String batchBody(String visitorId) {
+        return "{\"account_id\":\"1\",\"project_id\":\"2\",\"revision\":\"10\"," +
+                "\"visitors\":[{\"visitor_id\":\"" + visitorId + "\"}]}";
+    }
+
+    private void storeEvents(String... visitorIds) {
+        List<Pair<Long, Event>> events = new ArrayList<>();
+        for (int i = 0; i < visitorIds.length; i++) {
+            events.add(new Pair<>(i + 1L, new Event(url, batchBody(visitorIds[i]))));
+        }
+        // a single page in the first lane that has due events
+        when(eventDAO.getDueEvents(any(EventType.class), eq(0L), anyInt(), anyLong())).thenReturn(events, new ArrayList<>());
+    }
+
+    @Test
+    public void appliesNetworkBatchingPolicy() {
+        when(optlyStorage.getLong(NetworkBatchingPolicy.KEY_ENABLED, 0)).thenReturn(1L);
+        when(networkStateProvider.getNetworkState()).thenReturn(
+                new NetworkState(NetworkState.Transport.WIFI, true, false, false, 0));
+        storeEvents("a");
+        when(eventClient.send(any(Event.class), any(EventClient.Compression.class))).thenReturn(EventClient.SendResult.SENT);
+
+        assertTrue(eventDispatcher.dispatch());
+
+        ArgumentCaptor<EventClient.Compression> captor = ArgumentCaptor.forClass(EventClient.Compression.class);
+        verify(eventClient).send(any(Event.class), captor.capture());
+        assertEquals(NetworkBatchingPolicy.UNMETERED.gzipThreshold, captor.getValue().gzipThreshold);
+        assertEquals(NetworkBatchingPolicy.UNMETERED.gzipLevel, captor.getValue().gzipLevel);
+    }
+
+    @Test
+    public void usesDefaultCompressionWithoutNetworkBatchingPolicy() {
+        storeEvents("a");
+        when(eventClient.send(any(Event.class), any(EventClient.Compression.class))).thenReturn(EventClient.SendResult.SENT);
+
+        assertTrue(eventDispatcher.dispatch());
+
+        ArgumentCaptor<EventClient.Compression> captor = ArgumentCaptor.forClass(EventClient.Compression.class);
+        verify(eventClient).send(any(Event.class), captor.capture());
+        assertEquals(EventClient.GZIP_THRESHOLD, captor.getValue().gzipThreshold);
+    }
+
+    @Test
+    public void splitsRejectedMergedRequest() {
+        when(optlyStorage.getLong(EventDispatcher.KEY_MAX_BATCH_BYTES, -1)).thenReturn(100000L);
+        storeEvents("a", "b", "c");
+        when(eventClient.send(any(Event.class), any(EventClient.Compression.class))).thenAnswer(new Answer<EventClient.SendResult>() {
+            @Override
+            public EventClient.SendResult answer(InvocationOnMock invocation) {
+                String body = ((Event) invocation.getArgument(0)).getRequestBody();
+                boolean merged = body.contains("\"a\"") && body.contains("\"c\"");
+                return merged || body.contains("\"b\"") ? EventClient.SendResult.REJECTED : EventClient.SendResult.SENT;
+            }
+        });
+
+        assertTrue(eventDispatcher.dispatch());
+
+        verify(eventDAO).removeEvents(aryEq(new long[]{1, 3}));
+        verify(eventDAO).removeEvents(aryEq(new long[]{2}));
+        verify(eventDAO, never()).removeEvents(aryEq(new long[]{1, 2, 3}));
+    }
+
+    @Test
+    public void removesRowsInStorageOrderWithRequestsInFlight() throws Exception {
+        when(optlyStorage.getLong(EventDispatcher.KEY_MAX_BATCH_BYTES, -1)).thenReturn(100000L);
+        when(optlyStorage.getLong(EventDispatcher.KEY_MAX_CONCURRENT_REQUESTS, 1)).thenReturn(2L);
+        // one endpoint per event, so each event is sent in its own request
+        List<Pair<Long, Event>> events = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            events.add(new Pair<>(id, new Event(new URL("https://www.foo" + id + ".com"), batchBody("v" + id))));
+        }
+        when(eventDAO.getDueEvents(any(EventType.class), eq(0L), anyInt(), anyLong())).thenReturn(events, new ArrayList<>());
+
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch firstDone = new CountDownLatch(1);
+        final CountDownLatch secondDone = new CountDownLatch(1);
+        EventClient.PendingSend[] sends = {
+                pendingSend(firstDone, EventClient.SendResult.SENT),
+                pendingSend(secondDone, EventClient.SendResult.SENT),
+                pendingSend(null, EventClient.SendResult.FAILED),
+                pendingSend(null, EventClient.SendResult.SENT),
+                pendingSend(null, EventClient.SendResult.SENT)
+        };
+        for (int i = 0; i < sends.length; i++) {
+            when(eventClient.sendAsync(eq(events.get(i).second), any(EventClient.Compression.class))).thenReturn(sends[i]);
+        }
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                long[] ids = invocation.getArgument(0);
+                if (ids.length > 0) {
+                    log.add("removed " + Arrays.toString(ids));
+                }
+                return ids.length;
+            }
+        }).when(eventDAO).removeEvents(any(long[].class));
+
+        // the second request completes before the first one
+        Thread completions = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                log.add("completed 2");
+                secondDone.countDown();
+                log.add("completed 1");
+                firstDone.countDown();
+            }
+        });
+        completions.start();
+
+        assertFalse(eventDispatcher.dispatch());
+        completions.join();
+
+        // the third request fails: the fifth is not sent, the fourth was in flight and sent so its row is removed
+        assertEquals(Arrays.asList("completed 2", "completed 1", "removed [1]", "removed [2]", "removed [4]"), log);
+        verify(eventDAO).recordFailedAttempts(aryEq(new long[]{3}), anyLong());
+        verify(eventClient, never()).sendAsync(eq(events.get(4).second), any(EventClient.Compression.class));
+        verify(eventDAO, never()).removeEvents(aryEq(new long[]{5}));
+        assertEquals(EventDAO.RETRY_BACKOFF_MILLIS, eventDispatcher.getNextDrainDelay());
+    }
+
+    private static EventClient.PendingSend pendingSend(final CountDownLatch done, final EventClient.SendResult result) {
+        EventClient.PendingSend pendingSend = mock(EventClient.PendingSend.class);
+        when(pendingSend.await()).thenAnswer(new Answer<EventClient.SendResult>() {
+            @Override
+            public EventClient.SendResult answer(InvocationOnMock invocation) throws InterruptedException {
+                if (done != null) {
+                    done.await();
+                }
+                return result;
+            }
+        });
+        return pendingSend;
+    }
+
+    @Test
+    public void dispatchStoredWaitsForRunningDrain() throws Exception {
+        storeEvents("a");
+        final Event event = new Event(url, batchBody("a"));
+        final AtomicBoolean removed = new AtomicBoolean();
+        final CountDownLatch drainSending = new CountDownLatch(1);
+        final CountDownLatch drainSent = new CountDownLatch(1);
+        when(eventClient.send(any(Event.class), any(EventClient.Compression.class))).thenAnswer(new Answer<EventClient.SendResult>() {
+            @Override
+            public EventClient.SendResult answer(InvocationOnMock invocation) throws InterruptedException {
+                drainSending.countDown();
+                drainSent.await();
+                return EventClient.SendResult.SENT;
+            }
+        });
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                removed.set(true);
+                return 1;
+            }
+        }).when(eventDAO).removeEvents(aryEq(new long[]{1}));
+        when(eventDAO.getEvent(1)).thenAnswer(new Answer<Event>() {
+            @Override
+            public Event answer(InvocationOnMock invocation) {
+                return removed.get() ? null : event;
+            }
+        });
+
+        Thread drain = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                eventDispatcher.dispatch();
+            }
+        });
+        drain.start();
+        assertTrue(drainSending.await(10, TimeUnit.SECONDS));
+        final AtomicBoolean dispatched = new AtomicBoolean();
+        Thread inProcess = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatched.set(eventDispatcher.dispatchStored(1));
+            }
+        });
+        inProcess.start();
+        inProcess.join(200);
+        assertTrue(inProcess.isAlive());
+
+        drainSent.countDown();
+        drain.join();
+        inProcess.join();
+
+        // the row sent by the drain is not sent again
+        assertTrue(dispatched.get());
+        verify(eventClient, never()).send(any(Event.class));
+    }
+
+    @Test
+    public void keepsRefusedEventsWithLongBackoff() {
+        storeEvents("a");
+        when(eventClient.send(any(Event.class), any(EventClient.Compression.class))).thenReturn(EventClient.SendResult.REFUSED);
+
+        assertFalse(eventDispatcher.dispatch());
+
+        verify(eventDAO).recordRefusedAttempts(aryEq(new long[]{1}), anyLong());
+        verify(eventDAO, never()).removeEvents(aryEq(new long[]{1}));
+    }
+
+    @Test
+    public void storesRefusedEvent() {
+        when(eventClient.send(any(Event.class))).thenReturn(EventClient.SendResult.REFUSED);
+        when(eventDAO.insertEvent(any(Event.class))).thenReturn(5L);
+
+        assertFalse(eventDispatcher.dispatch(url.toString(), batchBody("a")));
+
+        verify(eventDAO).recordRefusedAttempts(aryEq(new long[]{5}), anyLong());
+    }
+
+    @Test
+    public void dropsInvalidEvent() {
+        when(eventClient.send(any(Event.class))).thenReturn(EventClient.SendResult.REJECTED);
+
+        assertTrue(eventDispatcher.dispatch(url.toString(), batchBody("a")));
+
+        verify(eventDAO, never()).insertEvent(any(Event.class));
+    }
+}
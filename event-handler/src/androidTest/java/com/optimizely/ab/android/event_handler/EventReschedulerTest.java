@@ -16,9 +16,18 @@ package com.optimizely.ab.android.event_handler;
 
 import android.content.Context;
 import android.content.Intent;
-import android.net.NetworkInfo;
 import android.net.wifi.WifiManager;
 
+import androidx.test.core.app.ApplicationProvider;
+import androidx.work.Configuration;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.testing.SynchronousExecutor;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import com.optimizely.ab.android.shared.NetworkState;
+import com.optimizely.ab.android.shared.NetworkStateProvider;
+
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -26,12 +35,19 @@ import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.slf4j.Logger;
 
+import java.util.List;
+import java.util.UUID;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.matches;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -100,13 +116,50 @@ public class EventReschedulerTest {
 
     @Test
     public void flushOnWifiConnectionIfScheduled() {
-        final Intent eventServiceIntent = mock(Intent.class);
         when(intent.getAction()).thenReturn(WifiManager.WIFI_STATE_CHANGED_ACTION);
-        NetworkInfo info = mock(NetworkInfo.class);
-        when(info.isConnected()).thenReturn(true);
-        when(intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO)).thenReturn(info);
+        NetworkStateProvider provider = mock(NetworkStateProvider.class);
+        when(provider.getNetworkState()).thenReturn(new NetworkState(NetworkState.Transport.WIFI, true, false, false, 0));
+        doReturn(provider).when(rescheduler).getNetworkStateProvider(context);
 
         rescheduler.reschedule(context, intent);
         verify(logger).info("Preemptively flushing events since wifi became available");
     }
+
+    @Test
+    public void flushNowDoesNotCancelDrains() throws Exception {
+        Context appContext = ApplicationProvider.getApplicationContext();
+        WorkManagerTestInitHelper.initializeTestWorkManager(appContext,
+                new Configuration.Builder().setExecutor(new SynchronousExecutor()).build());
+        WorkManager workManager = WorkManager.getInstance(appContext);
+        EventWorker.drainQueued.set(false);
+        EventWorker.startDrain(appContext, 1000, 0);
+        UUID queuedDrain = workManager.getWorkInfosForUniqueWork(EventWorker.drainWorkName).get().get(0).getId();
+
+        // a queued drain picks up the stored events
+        EventRescheduler.flushNow(appContext);
+        assertEquals(1, workManager.getWorkInfosForUniqueWork(EventWorker.drainWorkName).get().size());
+
+        // a drain that started reading storage is kept, and the flush runs after it
+        EventWorker.drainQueued.set(false);
+        EventRescheduler.flushNow(appContext);
+
+        List<WorkInfo> drains = workManager.getWorkInfosForUniqueWork(EventWorker.drainWorkName).get();
+        assertEquals(2, drains.size());
+        assertEquals(WorkInfo.State.ENQUEUED, workManager.getWorkInfoById(queuedDrain).get().getState());
+        for (WorkInfo drain : drains) {
+            assertTrue(drain.getState() != WorkInfo.State.CANCELLED);
+        }
+        EventWorker.drainQueued.set(false);
+    }
+
+    @Test
+    public void noFlushOnWifiChangeWithoutInternet() {
+        when(intent.getAction()).thenReturn(WifiManager.WIFI_STATE_CHANGED_ACTION);
+        NetworkStateProvider provider = mock(NetworkStateProvider.class);
+        when(provider.getNetworkState()).thenReturn(NetworkState.DISCONNECTED);
+        doReturn(provider).when(rescheduler).getNetworkStateProvider(context);
+
+        rescheduler.reschedule(context, intent);
+        verify(logger, never()).info("Preemptively flushing events since wifi became available");
+    }
 }
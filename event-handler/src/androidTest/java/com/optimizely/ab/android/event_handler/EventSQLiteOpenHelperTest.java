@@ -20,6 +20,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.os.Build;
+import android.util.Pair;
 import androidx.annotation.RequiresApi;
 import androidx.test.platform.app.InstrumentationRegistry;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -30,6 +31,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 
+import java.util.List;
+
 import static junit.framework.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -72,4 +75,30 @@ public class EventSQLiteOpenHelperTest {
         verify(logger).info("Created event table with SQL: {}", EventSQLiteOpenHelper.SQL_CREATE_EVENT_TABLE);
     }
 
+    @Test
+    public void onUpgradeMigratesVersion1Events() {
+        String dbName = String.format(EventSQLiteOpenHelper.DB_NAME, "1");
+        SQLiteDatabase v1 = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(dbName), null);
+        v1.execSQL("CREATE TABLE " + EventTable.NAME + " (" +
+                EventTable._ID + " INTEGER PRIMARY KEY, " +
+                EventTable.Column.URL + " TEXT NOT NULL," +
+                EventTable.Column.REQUEST_BODY + " TEXT NOT NULL)");
+        v1.execSQL("INSERT INTO " + EventTable.NAME + " VALUES (7, 'http://www.foo.com', 'bar=baz')");
+        v1.setVersion(1);
+        v1.close();
+
+        EventSQLiteOpenHelper eventSQLiteOpenHelper =
+                new EventSQLiteOpenHelper(context, "1", null, EventSQLiteOpenHelper.VERSION, logger);
+        eventSQLiteOpenHelper.getWritableDatabase();
+        eventSQLiteOpenHelper.close();
+        verify(logger).info("Upgraded event table from version {} to {}", 1, EventSQLiteOpenHelper.VERSION);
+
+        EventDAO eventDAO = EventDAO.getInstance(context, "1", mock(Logger.class));
+        List<Pair<Long, Event>> events = eventDAO.getEvents();
+        assertEquals(1, events.size());
+        assertEquals(7, events.get(0).first.longValue());
+        assertEquals("http://www.foo.com", events.get(0).second.getURL().toString());
+        assertEquals("bar=baz", events.get(0).second.getRequestBody());
+        eventDAO.closeDb();
+    }
 }
@@ -20,15 +20,21 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
 
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.work.Configuration;
 import androidx.work.Data;
 import androidx.work.ListenableWorker;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.testing.SynchronousExecutor;
 import androidx.work.testing.TestWorkerBuilder;
+import androidx.work.testing.WorkManagerTestInitHelper;
 
 import com.optimizely.ab.event.LogEvent;
 
@@ -36,8 +42,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests {@link EventWorker}
@@ -104,6 +113,80 @@ public class EventWorkerTest {
         verify(worker.eventDispatcher).dispatch(host, body);
     }
 
+    @Test
+    public void testEventWorker_dispatchStoredEvent() {
+        Data inputData = EventWorker.dataForStoredEvent(7L, 123L);
+        EventWorker worker = (EventWorker) TestWorkerBuilder.from(context, EventWorker.class, executor)
+                .setInputData(inputData)
+                .build();
+
+        EventDispatcher dispatcher = mock(EventDispatcher.class);
+        when(dispatcher.dispatchStored(7L)).thenReturn(false);    // dispatch failed
+        worker.eventDispatcher = dispatcher;
+
+        ListenableWorker.Result result = worker.doWork();
+
+        assertThat(result, is(ListenableWorker.Result.retry()));  // retry
+        verify(worker.eventDispatcher).dispatchStored(7L);
+    }
+
+    @Test
+    public void testEventWorker_delayedDrainDoesNotHoldBackNewDrain() throws Exception {
+        WorkManagerTestInitHelper.initializeTestWorkManager(context,
+                new Configuration.Builder().setExecutor(new SynchronousExecutor()).build());
+        WorkManager workManager = WorkManager.getInstance(context);
+        EventWorker.drainQueued.set(false);
+        EventWorker.drainTimerAt.set(Long.MAX_VALUE);
+
+        // stored events back off for an hour
+        EventWorker.startDrain(context, 123L, TimeUnit.HOURS.toMillis(1));
+        UUID retryTimer = workManager.getWorkInfosForUniqueWork(EventWorker.drainTimerWorkName).get().get(0).getId();
+
+        // a new event is drained now, not after the backoff
+        EventWorker.startDrain(context, 123L, 0);
+        List<WorkInfo> drains = workManager.getWorkInfosForUniqueWork(EventWorker.drainWorkName).get();
+        assertThat(drains.size(), is(1));
+        assertThat(drains.get(0).getState(), is(WorkInfo.State.ENQUEUED));
+
+        // a sooner timer replaces the pending one, a later one does not
+        EventWorker.startDrain(context, 123L, TimeUnit.MINUTES.toMillis(1));
+        assertThat(workManager.getWorkInfoById(retryTimer).get().getState(), is(WorkInfo.State.CANCELLED));
+        List<WorkInfo> timers = workManager.getWorkInfosForUniqueWork(EventWorker.drainTimerWorkName).get();
+        EventWorker.startDrain(context, 123L, TimeUnit.HOURS.toMillis(2));
+        assertThat(workManager.getWorkInfosForUniqueWork(EventWorker.drainTimerWorkName).get(), is(timers));
+
+        EventWorker.drainQueued.set(false);
+        EventWorker.drainTimerAt.set(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testEventWorker_drainTimerStartsDrain() {
+        EventWorker.drainQueued.set(false);
+        long timerAt = System.currentTimeMillis();
+        EventWorker.drainTimerAt.set(timerAt);
+        Data inputData = new Data.Builder()
+                .putAll(EventWorker.getDrainData(123L))
+                .putLong(EventWorker.KEY_DRAIN_TIMER_AT, timerAt)
+                .build();
+        WorkManagerTestInitHelper.initializeTestWorkManager(context,
+                new Configuration.Builder().setExecutor(new SynchronousExecutor()).build());
+        EventWorker worker = (EventWorker) TestWorkerBuilder.from(context, EventWorker.class, executor)
+                .setInputData(inputData)
+                .build();
+        EventDispatcher dispatcher = mock(EventDispatcher.class);
+        worker.eventDispatcher = dispatcher;
+
+        ListenableWorker.Result result = worker.doWork();
+
+        // the timer does not send events itself, it queues a drain
+        assertThat(result, is(ListenableWorker.Result.success()));
+        verifyNoInteractions(dispatcher);
+        assertThat(EventWorker.drainQueued.get(), is(true));
+        assertThat(EventWorker.drainTimerAt.get(), is(Long.MAX_VALUE));
+
+        EventWorker.drainQueued.set(false);
+    }
+
     // Helpers
 
     EventWorker mockEventWorker(String host, String body, Long retryInterval) {
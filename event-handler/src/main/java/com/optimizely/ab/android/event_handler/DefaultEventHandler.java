@@ -19,8 +19,12 @@ package com.optimizely.ab.android.event_handler;
 import android.content.Context;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.work.Data;
 
+import com.optimizely.ab.android.shared.NetworkMonitor;
+import com.optimizely.ab.android.shared.OptlyStorage;
 import com.optimizely.ab.android.shared.WorkerScheduler;
 import com.optimizely.ab.event.EventHandler;
 import com.optimizely.ab.event.LogEvent;
@@ -28,18 +32,38 @@ import com.optimizely.ab.event.LogEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Reference implementation of {@link EventHandler} for Android.
  * <p>
  * This is the main entry point to the Android Module.  This event handler creates a service intent and starts it in the passed
  * in context.  The intent service will attempt to send any and all queued events.
+ * <p>
+ * While the app is in the foreground, events are stored and then sent on an SDK thread instead, and WorkManager is
+ * only used to retry them in the background (see {@link WorkerScheduler#runInProcessWhenForeground}).
  */
 public class DefaultEventHandler implements EventHandler {
 
+    // OptlyStorage key for the dispatch retry interval, used by drains started outside of the handler
+    static final String KEY_DISPATCH_INTERVAL = "EVENT_DISPATCH_INTERVAL";
+
     @NonNull
     private final Context context;
     Logger logger = LoggerFactory.getLogger(DefaultEventHandler.class);
     private long dispatchInterval = -1;
+    private boolean coalescingEnabled = false;
+    private boolean persistenceFirstEnabled = false;
+    // set while the app is in the background, when events are stored and drained by a single work
+    private volatile boolean appInBackground = false;
+    @Nullable private EventDispatcher eventDispatcher;
+
+    // shared by all handlers, since in-process sends run one at a time on the SDK thread
+    @VisibleForTesting
+    @Nullable static EventDispatcher inProcessDispatcher;
+    // set while an in-process drain is queued, so a burst of events is drained once
+    private static final AtomicBoolean inProcessDrainQueued = new AtomicBoolean();
 
     /**
      * Private constructor
@@ -51,11 +75,14 @@ public class DefaultEventHandler implements EventHandler {
 
     /**
      * Gets a new instance
+     * <p>
+     * Stored events are flushed as soon as the device gets internet back from then on.
      *
      * @param context any valid Android {@link Context}
      * @return a new instance of {@link DefaultEventHandler}
      */
     public static DefaultEventHandler getInstance(@NonNull Context context) {
+        EventRescheduler.flushOnReconnect(context);
         return new DefaultEventHandler(context);
     }
 
@@ -65,6 +92,8 @@ public class DefaultEventHandler implements EventHandler {
      * Events will only be scheduled to dispatch as long as events remain in storage.
      * <p>
      * Events are put into storage when they fail to send over network.
+     * <p>
+     * The value is persisted so that drains started on reconnect use it as well.
      *
      * @param dispatchInterval the interval in milliseconds
      */
@@ -74,6 +103,306 @@ public class DefaultEventHandler implements EventHandler {
         } else {
             this.dispatchInterval = dispatchInterval;
         }
+        new OptlyStorage(context).saveLong(KEY_DISPATCH_INTERVAL, this.dispatchInterval);
+    }
+
+    /**
+     * Enables coalesced dispatching
+     * <p>
+     * When enabled, events are appended to storage and a single unique work drains storage, instead of
+     * scheduling a work (with the event body as its input) for every event.  Scheduling overhead is then
+     * constant per flush rather than growing with the number of events.
+     * <p>
+     * Events are written to storage on the thread calling {@link #dispatchEvent(LogEvent)}, or on an SDK thread
+     * when they are sent in process (see {@link WorkerScheduler#runInProcessWhenForeground}).
+     *
+     * @param coalescingEnabled true to coalesce event dispatching
+     */
+    public void setCoalescingEnabled(boolean coalescingEnabled) {
+        this.coalescingEnabled = coalescingEnabled;
+    }
+
+    /**
+     * Enables persistence-first dispatching
+     * <p>
+     * When enabled, an event is written to storage before its work is scheduled and only its storage id is
+     * passed to the work, instead of the event body (compressed when large).  Ignored when coalesced dispatching
+     * is enabled, which persists events first as well.
+     * <p>
+     * Events are written to storage on the thread calling {@link #dispatchEvent(LogEvent)}, or on an SDK thread
+     * when they are sent in process (see {@link WorkerScheduler#runInProcessWhenForeground}).
+     *
+     * @param persistenceFirstEnabled true to store events before scheduling their dispatch
+     */
+    public void setPersistenceFirstEnabled(boolean persistenceFirstEnabled) {
+        this.persistenceFirstEnabled = persistenceFirstEnabled;
+    }
+
+    /**
+     * Tells the handler that the app went to the background or came back to the foreground
+     * <p>
+     * While the app is in the background, events are stored and drained by a single unique work, as with
+     * coalesced dispatching, so flushing a batch of events on background enqueues no work per event.
+     *
+     * @param appInBackground true when the last activity of the app was stopped
+     */
+    public void setAppInBackground(boolean appInBackground) {
+        this.appInBackground = appInBackground;
+    }
+
+    /**
+     * Sets the max size of a merged request when draining stored events
+     * <p>
+     * Stored events for the same endpoint are merged into multi-visitor requests up to this size,
+     * so a backlog is sent in a few requests instead of one request per event.
+     * <p>
+     * The value is persisted so that drains scheduled after an app restart use it as well.
+     *
+     * @param maxBatchBytes the max request body size in bytes (batching is disabled when this is 0 or less)
+     */
+    public void setMaxBatchBytes(long maxBatchBytes) {
+        new OptlyStorage(context).saveLong(EventDispatcher.KEY_MAX_BATCH_BYTES, maxBatchBytes > 0 ? maxBatchBytes : -1);
+    }
+
+    /**
+     * Sets the max number of requests in flight when draining stored events
+     * <p>
+     * With more than one request in flight, the drain time of a backlog on a high-latency network is bounded by
+     * bandwidth rather than by the round trip time of every request.  Sent events are still removed from storage
+     * in the order they were stored.
+     * <p>
+     * The value is persisted so that drains scheduled after an app restart use it as well.
+     *
+     * @param maxConcurrentRequests the max number of requests in flight, from 1 (the default) to 8
+     */
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        int value = Math.max(1, Math.min(maxConcurrentRequests, EventDispatcher.MAX_CONCURRENT_REQUESTS));
+        new OptlyStorage(context).saveLong(EventDispatcher.KEY_MAX_CONCURRENT_REQUESTS, value);
+    }
+
+    /**
+     * Enables network-aware batching of stored events
+     * <p>
+     * When enabled, drains of stored events pick their request size and compression from the current network:
+     * large batches on unmetered networks, small and strongly compressed ones on fast metered networks.  With
+     * coalesced dispatching, the flush delay follows the network as well, and flushes are deferred (up to 15
+     * minutes) on roaming, slow metered or unvalidated networks.  Overrides {@link #setMaxBatchBytes(long)}.
+     * <p>
+     * The value is persisted so that drains scheduled after an app restart use it as well.
+     *
+     * @param enabled true to batch stored events according to the network
+     */
+    public void setNetworkAwareBatching(boolean enabled) {
+        new OptlyStorage(context).saveLong(NetworkBatchingPolicy.KEY_ENABLED, enabled ? 1 : 0);
+    }
+
+    /**
+     * Sets the max number of events kept in storage
+     * <p>
+     * Events are put into storage when they fail to send over network.  When the queue is over the limit,
+     * events are dropped according to the {@link EvictionPolicy}.
+     *
+     * @param maxRows the max number of stored events (no limit when this is 0 or less)
+     */
+    public void setMaxQueueRows(long maxRows) {
+        new OptlyStorage(context).saveLong(EventQueueLimits.KEY_MAX_ROWS, maxRows > 0 ? maxRows : -1);
+    }
+
+    /**
+     * Sets the max disk size of the events kept in storage
+     * <p>
+     * When the queue is over the limit, events are dropped according to the {@link EvictionPolicy}.
+     *
+     * @param maxBytes the max size of the stored (compressed) event bodies in bytes (no limit when this is 0 or less)
+     */
+    public void setMaxQueueBytes(long maxBytes) {
+        new OptlyStorage(context).saveLong(EventQueueLimits.KEY_MAX_BYTES, maxBytes > 0 ? maxBytes : -1);
+    }
+
+    /**
+     * Sets the max age of the events kept in storage
+     * <p>
+     * Stored events older than this are dropped whatever the {@link EvictionPolicy}.
+     *
+     * @param maxAge the max age in milliseconds (no limit when this is 0 or less)
+     */
+    public void setMaxQueueAge(long maxAge) {
+        new OptlyStorage(context).saveLong(EventQueueLimits.KEY_MAX_AGE, maxAge > 0 ? maxAge : -1);
+    }
+
+    /**
+     * Sets which stored events are dropped first when the queue is over its row or byte limit
+     *
+     * @param policy the eviction policy ({@link EvictionPolicy#DROP_BY_TYPE} by default)
+     */
+    public void setEvictionPolicy(@NonNull EvictionPolicy policy) {
+        new OptlyStorage(context).saveString(EventQueueLimits.KEY_EVICTION_POLICY, policy.name());
+    }
+
+    /**
+     * Gets the number of stored events dropped because the queue was over its limits
+     *
+     * @return the total number of evicted events
+     */
+    public long getEvictedEventCount() {
+        return new OptlyStorage(context).getLong(EventQueueLimits.KEY_EVICTED_COUNT, 0);
+    }
+
+    /**
+     * Gets the number of stored events in each priority lane
+     * <p>
+     * Reads the event database, so this should not be called on the main thread.
+     *
+     * @return the number of stored events by event type ("conversion", "impression" or "unknown")
+     */
+    @NonNull
+    public Map<String, Long> getQueuedEventCounts() {
+        return getEventDispatcher().countEventsByType();
+    }
+
+    /**
+     * @return the delay before a coalesced drain runs, 0 unless network-aware batching is enabled
+     */
+    private long getFlushDelay() {
+        if (!NetworkBatchingPolicy.isEnabled(new OptlyStorage(context))) {
+            return 0;
+        }
+        return new NetworkBatchingPolicy(NetworkMonitor.getInstance(context)).current().flushDelayMillis;
+    }
+
+    private synchronized EventDispatcher getEventDispatcher() {
+        if (eventDispatcher == null) {
+            eventDispatcher = EventDispatcher.getInstance(context);
+        }
+        return eventDispatcher;
+    }
+
+    /**
+     * @return true if events can be sent on the SDK thread, see {@link WorkerScheduler#canRunInProcess(Context)}
+     */
+    @VisibleForTesting
+    boolean canDispatchInProcess() {
+        return WorkerScheduler.canRunInProcess(context);
+    }
+
+    /**
+     * Store and send an event on the SDK thread, with a work to retry in the background if sending fails.
+     * <p>
+     * The caller does not wait on storage.  The event is sent from its row (or by a drain when coalescing), so
+     * once stored it is not lost if the process dies.  When the app is no longer in the foreground, the event
+     * is dispatched with a work instead.
+     *
+     * @param logEvent the event
+     */
+    private void dispatchInProcess(@NonNull final LogEvent logEvent) {
+        WorkerScheduler.runInProcess(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!canDispatchInProcess()) {
+                        dispatchWithWork(logEvent, coalescingEnabled, 0);
+                        return;
+                    }
+                    EventDispatcher dispatcher = getInProcessDispatcher(context);
+                    long eventId = dispatcher.enqueue(logEvent.getEndpointUrl(), logEvent.getBody());
+                    if (eventId == -1) {
+                        startEventService(EventWorker.getData(logEvent, dispatchInterval));
+                    } else if (coalescingEnabled) {
+                        // a drain already queued picks up this event
+                        if (inProcessDrainQueued.compareAndSet(false, true)) {
+                            WorkerScheduler.runInProcess(new Runnable() {
+                                @Override
+                                public void run() {
+                                    drainInProcess();
+                                }
+                            });
+                        }
+                    } else if (!dispatcher.dispatchStored(eventId)) {
+                        WorkerScheduler.startService(context, EventWorker.workerId, EventWorker.class,
+                                EventWorker.dataForStoredEvent(eventId, dispatchInterval), dispatchInterval,
+                                Math.max(dispatchInterval, 0));
+                    }
+                } catch (Exception e) {
+                    // a stored event is sent by a later drain
+                    logger.warn("Unable to dispatch event in process: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Drain stored events on the SDK thread, with a drain in the background for the events that failed to send.
+     */
+    private void drainInProcess() {
+        try {
+            inProcessDrainQueued.set(false);
+            EventDispatcher dispatcher = getInProcessDispatcher(context);
+            if (!dispatcher.dispatch()) {
+                // failed events back off in storage, drain them once they are due
+                startDrainService(Math.max(dispatcher.getNextDrainDelay(), 0));
+            }
+        } catch (Exception e) {
+            // the events are in storage, a later drain sends them
+            logger.warn("Unable to dispatch event in process: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Dispatch an event with a work, storing it first when coalescing or persisting events first.
+     *
+     * @param logEvent the event
+     * @param coalesce true to store the event and drain storage with a single work
+     * @param flushDelay the delay before a coalesced drain runs in milliseconds
+     */
+    private void dispatchWithWork(@NonNull LogEvent logEvent, boolean coalesce, long flushDelay) {
+        long eventId = -1;
+        if (coalesce || persistenceFirstEnabled) {
+            // falls back to passing the event body to a work when the event cannot be stored
+            eventId = getEventDispatcher().enqueue(logEvent.getEndpointUrl(), logEvent.getBody());
+        }
+
+        if (eventId != -1 && coalesce) {
+            // a drain already queued picks up this event, so do not schedule another one
+            startDrainService(flushDelay);
+        } else if (eventId != -1) {
+            startEventService(EventWorker.dataForStoredEvent(eventId, dispatchInterval));
+        } else {
+            startEventService(EventWorker.getData(logEvent, dispatchInterval));
+        }
+    }
+
+    /**
+     * Start the unique drain of stored events, unless one is queued
+     *
+     * @param delay the delay before the drain runs in milliseconds
+     */
+    private void startDrainService(long delay) {
+        EventWorker.startDrain(context, dispatchInterval, delay);
+    }
+
+    /**
+     * Start a work for a single event, expedited while the app is in the foreground
+     *
+     * @param inputData the input data of the event
+     */
+    private void startEventService(Data inputData) {
+        if (WorkerScheduler.isAppInForeground()) {
+            WorkerScheduler.startExpeditedService(context, EventWorker.workerId, EventWorker.class, inputData, dispatchInterval);
+        } else {
+            WorkerScheduler.startService(context, EventWorker.workerId, EventWorker.class, inputData, dispatchInterval);
+        }
+    }
+
+    /**
+     * @param context any valid Android {@link Context}
+     * @return the dispatcher of in-process sends, only used on the SDK thread
+     */
+    private static EventDispatcher getInProcessDispatcher(@NonNull Context context) {
+        if (inProcessDispatcher == null) {
+            Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+            inProcessDispatcher = EventDispatcher.getInstance(appContext);
+        }
+        return inProcessDispatcher;
     }
 
     /**
@@ -96,8 +425,14 @@ public class DefaultEventHandler implements EventHandler {
         // NOTE: retryInterval (dispatchInterval) is passed to WorkManager:
         // - in InputData to enable/disable retries
         // - in BackOffCriteria to change retry interval
-        Data inputData = EventWorker.getData(logEvent, dispatchInterval);
-        WorkerScheduler.startService(context, EventWorker.workerId, EventWorker.class, inputData, dispatchInterval);
+        boolean coalesce = coalescingEnabled || appInBackground;
+        long flushDelay = coalesce ? getFlushDelay() : 0;
+        if (!appInBackground && flushDelay == 0 && WorkerScheduler.runInProcessWhenForeground) {
+            // in the foreground, events are sent right away on the SDK thread instead of waiting for WorkManager
+            dispatchInProcess(logEvent);
+        } else {
+            dispatchWithWork(logEvent, coalesce, flushDelay);
+        }
 
         if (dispatchInterval < 0) {
             logger.info("Sent url {} to the event handler service", logEvent.getEndpointUrl());
@@ -0,0 +1,183 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.event_handler;
+
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Merges stored {@link Event} rows into multi-visitor EventBatch payloads.
+ * <p>
+ * Events are grouped by endpoint url and by every EventBatch field other than "visitors"
+ * (account, project, revision, client...), so a merged payload is equivalent to sending its rows one by one.
+ * Bodies that are not EventBatch json are passed through as single-row batches.
+ */
+class EventBatcher {
+
+    static final String KEY_VISITORS = "visitors";
+
+    @NonNull private final Logger logger;
+    private final long maxBatchBytes;
+
+    /**
+     * @param maxBatchBytes the maximum size of a merged request body.  A single event larger than this is sent alone.
+     * @param logger where to log errors and warnings.
+     */
+    EventBatcher(long maxBatchBytes, @NonNull Logger logger) {
+        this.maxBatchBytes = maxBatchBytes;
+        this.logger = logger;
+    }
+
+    /**
+     * A merged event and the ids of the stored rows it was built from.
+     */
+    static class Batch {
+        @NonNull final Event event;
+        @NonNull final long[] ids;
+
+        Batch(@NonNull Event event, @NonNull long[] ids) {
+            this.event = event;
+            this.ids = ids;
+        }
+    }
+
+    /**
+     * Group and merge stored events.  Batches are returned in the storage order of their first row.
+     * <p>
+     * Only the given events are merged together, so a drain reading storage one page at a time
+     * merges at most a page of rows into a request.
+     * @param events stored events with their row ids, in storage order
+     * @return the merged batches
+     */
+    @NonNull
+    List<Batch> batch(@NonNull List<Pair<Long, Event>> events) {
+        // a batch takes the slot of its first row, and is set there once full or at the end
+        List<Batch> batches = new ArrayList<>();
+        Map<String, Builder> open = new HashMap<>();
+
+        for (Pair<Long, Event> pair : events) {
+            JSONObject body = parse(pair.second.getRequestBody());
+            if (body == null) {
+                batches.add(new Batch(pair.second, new long[]{pair.first}));
+                continue;
+            }
+
+            String key = pair.second.getURL().toString() + "|" + headerKey(body);
+            int size = pair.second.getRequestBody().length();
+
+            Builder builder = open.get(key);
+            if (builder != null && builder.size + size > maxBatchBytes) {
+                batches.set(builder.slot, builder.build());
+                builder = null;
+            }
+            if (builder == null) {
+                builder = new Builder(pair.second, body, batches.size());
+                batches.add(null);
+                open.put(key, builder);
+            } else {
+                builder.add(body);
+            }
+            builder.ids.add(pair.first);
+            builder.size += size;
+        }
+
+        for (Builder builder : open.values()) {
+            batches.set(builder.slot, builder.build());
+        }
+
+        return batches;
+    }
+
+    private JSONObject parse(String body) {
+        try {
+            JSONObject json = new JSONObject(body);
+            if (json.optJSONArray(KEY_VISITORS) != null) {
+                return json;
+            }
+        } catch (JSONException e) {
+            logger.debug("Stored event is not an event batch, it will be sent alone");
+        }
+        return null;
+    }
+
+    /**
+     * @return a stable string of all the top-level fields except visitors
+     */
+    private static String headerKey(JSONObject body) {
+        Map<String, Object> header = new TreeMap<>();
+        Iterator<String> keys = body.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!KEY_VISITORS.equals(key)) {
+                header.put(key, body.opt(key));
+            }
+        }
+        return header.toString();
+    }
+
+    private class Builder {
+        @NonNull final Event first;
+        @NonNull final JSONObject merged;
+        @NonNull final List<Long> ids = new ArrayList<>();
+        // the index of the batch in the list of batches
+        final int slot;
+        long size = 0;
+        int count = 0;
+
+        Builder(@NonNull Event first, @NonNull JSONObject body, int slot) {
+            this.first = first;
+            this.merged = body;
+            this.slot = slot;
+            this.count = 1;
+        }
+
+        void add(@NonNull JSONObject body) {
+            JSONArray visitors = merged.optJSONArray(KEY_VISITORS);
+            JSONArray more = body.optJSONArray(KEY_VISITORS);
+            for (int i = 0; i < more.length(); i++) {
+                visitors.put(more.opt(i));
+            }
+            count++;
+        }
+
+        Batch build() {
+            long[] rowIds = new long[ids.size()];
+            for (int i = 0; i < rowIds.length; i++) {
+                rowIds[i] = ids.get(i);
+            }
+            // a single row is sent as stored
+            Event event = count == 1 ? first : new Event(first.getURL(), merged.toString());
+            if (count > 1) {
+                logger.info("Merged {} stored events into one request to {}", count, first.getURL());
+            }
+            return new Batch(event, rowIds);
+        }
+    }
+}
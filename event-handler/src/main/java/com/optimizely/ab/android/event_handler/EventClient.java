@@ -16,15 +16,22 @@
 
 package com.optimizely.ab.android.event_handler;
 
+import androidx.annotation.NonNull;
+
 import com.optimizely.ab.android.shared.Client;
+import com.optimizely.ab.android.shared.RequestBodyWriter;
+import com.optimizely.ab.android.shared.ResponsePolicy;
+import com.optimizely.ab.android.shared.RetryPolicy;
 
 import org.slf4j.Logger;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 
 /**
  * Makes network requests related to events
@@ -33,6 +40,44 @@ class EventClient {
     // easy way to set the connection timeout
     public static int CONNECTION_TIMEOUT = 10 * 1000;
     public static int READ_TIMEOUT = 60 * 1000;
+    // min request body size in bytes for gzip content encoding (disabled by default)
+    public static int GZIP_THRESHOLD = RequestBodyWriter.GZIP_DISABLED;
+
+    /**
+     * The outcome of sending an event.
+     */
+    enum SendResult {
+        SENT,
+        // may be sent by a later retry
+        FAILED,
+        // refused by the endpoint (other 4xx), which a proxy or captive portal may answer for any request
+        REFUSED,
+        // the request is invalid or too large (400, 413, 422), sending it again fails the same way
+        REJECTED
+    }
+
+    /**
+     * The gzip content encoding of requests.
+     */
+    static class Compression {
+        // the min request body size in bytes for gzip encoding
+        final int gzipThreshold;
+        // the compression level, from Deflater.BEST_SPEED to Deflater.BEST_COMPRESSION
+        final int gzipLevel;
+
+        Compression(int gzipThreshold, int gzipLevel) {
+            this.gzipThreshold = gzipThreshold;
+            this.gzipLevel = gzipLevel;
+        }
+
+        /**
+         * @return the compression set by {@link #GZIP_THRESHOLD}
+         */
+        @NonNull
+        static Compression getDefault() {
+            return new Compression(GZIP_THRESHOLD, Deflater.DEFAULT_COMPRESSION);
+        }
+    }
 
     private final Client client;
     // Package private and non final so it can easily be mocked for tests
@@ -49,61 +94,168 @@ class EventClient {
      * @return true if successful
      */
     boolean sendEvent(final Event event) {
-        Client.Request<Boolean> request = new Client.Request<Boolean>() {
-            @Override
-            public Boolean execute() {
-                HttpURLConnection urlConnection = null;
-                try {
-                    logger.info("Dispatching event: {}", event);
-                    urlConnection = client.openConnection(event.getURL());
-
-                    if (urlConnection == null) {
-                        return Boolean.FALSE;
-                    }
+        return send(event) == SendResult.SENT;
+    }
 
-                    // set timeouts for releasing failed connections (default is 0 = no timeout).
-                    urlConnection.setConnectTimeout(CONNECTION_TIMEOUT);
-                    urlConnection.setReadTimeout(READ_TIMEOUT);
-
-                    urlConnection.setRequestMethod("POST");
-                    urlConnection.setRequestProperty("Content-Type", "application/json");
-                    urlConnection.setDoOutput(true);
-                    OutputStream outputStream = urlConnection.getOutputStream();
-                    outputStream.write(event.getRequestBody().getBytes());
-                    outputStream.flush();
-                    outputStream.close();
-                    int status = urlConnection.getResponseCode();
-                    if (status >= 200 && status < 300) {
-                        InputStream in = new BufferedInputStream(urlConnection.getInputStream());
-                        in.close();
-                        logger.info("Successfully dispatched event: {}", event);
-                        return Boolean.TRUE;
-                    } else {
-                        logger.error("Unexpected response from event endpoint, status: " + status);
-                        return Boolean.FALSE;
-                    }
-                } catch (Exception e) {
-                    logger.error("Unable to send event: {}", event, e);
+    /**
+     * Attempt to send the event to the event url.
+     * @param event to send
+     * @return the outcome
+     */
+    SendResult send(final Event event) {
+        return send(event, Compression.getDefault());
+    }
+
+    /**
+     * Attempt to send the event to the event url.
+     * @param event to send
+     * @param compression the gzip content encoding of the request
+     * @return the outcome
+     */
+    SendResult send(final Event event, @NonNull Compression compression) {
+        EventRequest request = new EventRequest(event, compression);
+        Boolean success = client.execute(request, 2, 5);
+        logger.debug("SendEvent completed: {}", event);
+        return request.toResult(success);
+    }
+
+    /**
+     * Start sending the event to the event url, with the same retries as {@link #send(Event)}, without
+     * blocking the calling thread.
+     * @param event to send
+     * @return the pending send
+     */
+    PendingSend sendAsync(final Event event) {
+        return sendAsync(event, Compression.getDefault());
+    }
+
+    /**
+     * Start sending the event to the event url, see {@link #sendAsync(Event)}.
+     * @param event to send
+     * @param compression the gzip content encoding of the request
+     * @return the pending send
+     */
+    PendingSend sendAsync(final Event event, @NonNull Compression compression) {
+        EventRequest request = new EventRequest(event, compression);
+        Future<Boolean> future = client.executeAsync(request, RetryPolicy.exponential(2, 5), null);
+        return new PendingSend(future, request);
+    }
+
+    /**
+     * @param event an event
+     * @return the time in milliseconds until the event endpoint accepts requests again, 0 if it does now
+     */
+    long getPausedMillis(Event event) {
+        return client.getPausedMillis(event.getURL());
+    }
+
+    /**
+     * Sends an event, keeping the outcome of its last attempt.
+     */
+    private class EventRequest implements Client.Request<Boolean> {
+        @NonNull private final Event event;
+        @NonNull private final Compression compression;
+        // the outcome of the last attempt when it was refused or rejected by the endpoint (4xx)
+        private volatile SendResult refusal;
+        // set when the last attempt should not be retried
+        private volatile boolean notRetryable;
+
+        EventRequest(@NonNull Event event, @NonNull Compression compression) {
+            this.event = event;
+            this.compression = compression;
+        }
+
+        @Override
+        public boolean isNotRetryable(Boolean response) {
+            return notRetryable;
+        }
+
+        SendResult toResult(Boolean success) {
+            if (success != null && success) {
+                return SendResult.SENT;
+            }
+            SendResult refusal = this.refusal;
+            return refusal != null ? refusal : SendResult.FAILED;
+        }
+
+        @Override
+        public Boolean execute() {
+            HttpURLConnection urlConnection = null;
+            boolean responseReceived = false;
+            notRetryable = false;
+            refusal = null;
+            try {
+                logger.info("Dispatching event: {}", event);
+                urlConnection = client.openConnection(event.getURL());
+
+                if (urlConnection == null) {
+                    notRetryable = client.isCircuitOpen(event.getURL());
                     return Boolean.FALSE;
                 }
-                finally {
-                    if (urlConnection != null) {
-                        try {
-                            urlConnection.disconnect();
-                        }
-                        catch (Exception e) {
-                            logger.error("Unable to close connection", e);
-                        }
+
+                // set timeouts for releasing failed connections (default is 0 = no timeout).
+                urlConnection.setConnectTimeout(CONNECTION_TIMEOUT);
+                urlConnection.setReadTimeout(READ_TIMEOUT);
+
+                urlConnection.setRequestMethod("POST");
+                urlConnection.setRequestProperty("Content-Type", "application/json");
+                urlConnection.setDoOutput(true);
+                RequestBodyWriter.write(urlConnection, event.getRequestBody(), compression.gzipThreshold,
+                        compression.gzipLevel);
+                int status = urlConnection.getResponseCode();
+                responseReceived = true;
+                if (status >= 200 && status < 300) {
+                    InputStream in = new BufferedInputStream(urlConnection.getInputStream());
+                    in.close();
+                    logger.info("Successfully dispatched event: {}", event);
+                    return Boolean.TRUE;
+                } else {
+                    logger.error("Unexpected response from event endpoint, status: " + status);
+                    if (ResponsePolicy.classify(status) == ResponsePolicy.Action.FAIL) {
+                        refusal = ResponsePolicy.isInvalidRequest(status) ? SendResult.REJECTED : SendResult.REFUSED;
                     }
+                    return Boolean.FALSE;
                 }
+            } catch (Exception e) {
+                logger.error("Unable to send event: {}", event, e);
+                return Boolean.FALSE;
             }
-        };
+            finally {
+                // drains the response so the connection can be reused
+                if (!client.releaseConnection(urlConnection, responseReceived)) {
+                    notRetryable = true;
+                }
+            }
+        }
+    }
 
-        Boolean success = client.execute(request, 2, 5);
-        if (success == null) {
-            success = false;
+    /**
+     * An event being sent by {@link #sendAsync(Event)}.
+     */
+    static class PendingSend {
+        private final Future<Boolean> future;
+        private final EventRequest request;
+
+        PendingSend(Future<Boolean> future, EventRequest request) {
+            this.future = future;
+            this.request = request;
+        }
+
+        /**
+         * Wait for the send to complete.
+         * @return the outcome, {@link SendResult#FAILED} if the waiting thread is interrupted
+         */
+        SendResult await() {
+            Boolean success = null;
+            try {
+                success = future.get();
+            } catch (InterruptedException e) {
+                future.cancel(false);
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // requests catch their errors, handled as a failure anyway
+            }
+            return request.toResult(success);
         }
-        logger.debug("SendEvent completed: {}", event);
-        return success;
     }
 }
@@ -19,18 +19,27 @@ package com.optimizely.ab.android.event_handler;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 import android.util.Pair;
 
+import com.optimizely.ab.android.shared.EventHandlerUtils;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.LinkedList;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Handles interactions with the SQLiteDatabase that store {@link Event} instances.
@@ -38,6 +47,14 @@ import java.util.List;
  */
 class EventDAO {
 
+    static final Charset BODY_CHARSET = StandardCharsets.UTF_8;
+    // delay before retrying a stored event that failed to send, doubled on every failed attempt
+    static final long RETRY_BACKOFF_MILLIS = 30 * 1000;
+    // caps the retry delay at RETRY_BACKOFF_MILLIS * 2^MAX_BACKOFF_SHIFT (32 minutes)
+    static final int MAX_BACKOFF_SHIFT = 6;
+    // delay before retrying a stored event refused by the event endpoint (401, 403, 404...), doubled the same way
+    static final long REFUSED_BACKOFF_MILLIS = 60 * 60 * 1000;
+
     @NonNull
     final Logger logger;
     @NonNull private final EventSQLiteOpenHelper dbHelper;
@@ -71,25 +88,39 @@ class EventDAO {
      * @return true if successful
      */
     boolean storeEvent(@NonNull Event event) {
+        return insertEvent(event) != -1;
+    }
+
+    /**
+     * Store an event in SQLite
+     * @param event to store
+     * @return the id of the stored event, or -1 on failure
+     */
+    long insertEvent(@NonNull Event event) {
         logger.info("Inserting {} into db", event);
+        byte[] body = event.getRequestBody().getBytes(BODY_CHARSET);
         ContentValues values = new ContentValues();
         values.put(EventTable.Column.URL, event.getURL().toString());
-        values.put(EventTable.Column.REQUEST_BODY, event.getRequestBody());
+        values.put(EventTable.Column.CREATED_AT, System.currentTimeMillis());
+        values.put(EventTable.Column.BYTE_SIZE, body.length);
+        values.put(EventTable.Column.EVENT_TYPE, EventType.classify(event.getRequestBody()).value);
 
         // Since we are setting the "null column hack" param to null empty values will not be inserted
         // at all instead of inserting null.
         try {
+            values.put(EventTable.Column.BODY, EventHandlerUtils.compress(body));
+
             long newRowId;
             newRowId = dbHelper.getWritableDatabase().insert(EventTable.NAME, null, values);
 
             logger.info("Inserted {} into db", event);
 
-            return newRowId != -1;
+            return newRowId;
         } catch (Exception e) {
             logger.error("Error inserting Optimizely event into db.", e);
         }
 
-        return false;
+        return -1;
     }
 
     /**
@@ -97,14 +128,50 @@ class EventDAO {
      * @return a list of events.
      */
     List<Pair<Long, Event>> getEvents() {
-        List<Pair<Long, Event>> events = new LinkedList<>();
+        return queryEvents(null, null, null);
+    }
+
+    /**
+     * Get a stored event
+     * @param eventId id of the event
+     * @return the event, or null when there is no event with this id
+     */
+    @Nullable
+    Event getEvent(long eventId) {
+        List<Pair<Long, Event>> events = queryEvents(EventTable._ID + " = ?", new String[]{String.valueOf(eventId)}, null);
+        return events.isEmpty() ? null : events.get(0).second;
+    }
+
+    /**
+     * Get a page of the events of a priority lane that are due to be sent, in insertion order.
+     * <p>
+     * Pages are keyed on the row id rather than an offset, so rows removed while paging
+     * do not shift later pages.  Pass the id of the last event of a page to get the next one.
+     * Events that failed to send are not due until their backoff delay has passed.
+     *
+     * @param lane the type of the events returned
+     * @param afterId only events with a larger id are returned (0 for the first page)
+     * @param pageSize the max number of events returned
+     * @param now the current time in milliseconds
+     * @return a list of at most pageSize events, empty when there are no more due events in the lane.
+     */
+    List<Pair<Long, Event>> getDueEvents(@NonNull EventType lane, long afterId, int pageSize, long now) {
+        return queryEvents(EventTable.Column.EVENT_TYPE + " = ? AND " + EventTable._ID + " > ? AND " +
+                        EventTable.Column.NEXT_ATTEMPT_AT + " <= ?",
+                new String[]{lane.value, String.valueOf(afterId), String.valueOf(now)}, String.valueOf(pageSize));
+    }
+
+    private List<Pair<Long, Event>> queryEvents(String selection, String[] selectionArgs, String limit) {
+        List<Pair<Long, Event>> events = new ArrayList<>();
+        // rows that cannot be decoded are never sent, so they are removed instead of blocking the queue
+        List<Long> malformedIds = new ArrayList<>();
 
         // Define a projection that specifies which columns from the database
         // you will actually use after this query.
         String[] projection = {
                 EventTable.Column._ID,
                 EventTable.Column.URL,
-                EventTable.Column.REQUEST_BODY,
+                EventTable.Column.BODY,
         };
 
         Cursor cursor = null;
@@ -112,11 +179,12 @@ class EventDAO {
             cursor = dbHelper.getReadableDatabase().query(
                     EventTable.NAME,           // The table to query
                     projection,                 // The columns to return
-                    null,                       // The columns for the WHERE clause
-                    null,                       // The values for the WHERE clause
+                    selection,                  // The columns for the WHERE clause
+                    selectionArgs,              // The values for the WHERE clause
                     null,                       // don't group the rows
                     null,                       // don't filter by row groups
-                    null                        // The sort order
+                    EventTable._ID + " ASC",    // The sort order
+                    limit                       // The max number of rows
             );
             logger.info("Opened database");
         } catch (Exception e) {
@@ -125,20 +193,25 @@ class EventDAO {
 
         try {
             if (cursor != null && cursor.moveToFirst()) {
+                int idIndex = cursor.getColumnIndexOrThrow(EventTable._ID);
+                int urlIndex = cursor.getColumnIndexOrThrow(EventTable.Column.URL);
+                int bodyIndex = cursor.getColumnIndexOrThrow(EventTable.Column.BODY);
+                // events share a few endpoints, so parse each url once
+                Map<String, URL> urls = new HashMap<>();
                 do {
-                    long itemId = cursor.getLong(
-                            cursor.getColumnIndexOrThrow(EventTable._ID)
-                    );
-                    String url = cursor.getString(
-                            cursor.getColumnIndexOrThrow(EventTable.Column.URL)
-                    );
-                    String requestBody = cursor.getString(
-                            cursor.getColumnIndexOrThrow(EventTable.Column.REQUEST_BODY)
-                    );
+                    long itemId = cursor.getLong(idIndex);
+                    String url = cursor.getString(urlIndex);
                     try {
-                        events.add(new Pair<>(itemId, new Event(new URL(url), requestBody)));
-                    } catch (MalformedURLException e) {
+                        String requestBody = new String(EventHandlerUtils.decompress(cursor.getBlob(bodyIndex)), BODY_CHARSET);
+                        URL parsedUrl = urls.get(url);
+                        if (parsedUrl == null) {
+                            parsedUrl = new URL(url);
+                            urls.put(url, parsedUrl);
+                        }
+                        events.add(new Pair<>(itemId, new Event(parsedUrl, requestBody)));
+                    } catch (Exception e) {
                         logger.error("Retrieved a malformed event from storage", e);
+                        malformedIds.add(itemId);
                     }
                 } while (cursor.moveToNext());
 
@@ -160,6 +233,15 @@ class EventDAO {
             }
         }
 
+        if (!malformedIds.isEmpty()) {
+            long[] ids = new long[malformedIds.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = malformedIds.get(i);
+            }
+            logger.error("Dropping {} malformed events from storage", ids.length);
+            removeEvents(ids);
+        }
+
         return events;
     }
 
@@ -193,6 +275,242 @@ class EventDAO {
         return false;
     }
 
+    /**
+     * Remove events from SQLite db in a single transaction.
+     * @param eventIds ids of the events to remove
+     * @return the number of events removed.  Nothing is removed on failure.
+     */
+    int removeEvents(@NonNull long[] eventIds) {
+        if (eventIds.length == 0) {
+            return 0;
+        }
+
+        SQLiteStatement statement = null;
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            statement = db.compileStatement("DELETE FROM " + EventTable.NAME + " WHERE " + EventTable._ID + " = ?");
+            int numRowsDeleted = 0;
+            db.beginTransaction();
+            try {
+                for (long eventId : eventIds) {
+                    statement.bindLong(1, eventId);
+                    numRowsDeleted += statement.executeUpdateDelete();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            if (numRowsDeleted < eventIds.length) {
+                logger.error("Tried to remove {} events but only {} existed", eventIds.length, numRowsDeleted);
+            } else {
+                logger.info("Removed {} events from db", numRowsDeleted);
+            }
+            return numRowsDeleted;
+        } catch (Exception e) {
+            logger.error("Could not remove events from db.", e);
+        } finally {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Record a failed send for events, delaying their next attempt with exponential backoff.
+     * @param eventIds ids of the events that failed to send
+     * @param now the current time in milliseconds
+     */
+    void recordFailedAttempts(@NonNull long[] eventIds, long now) {
+        recordAttempts(eventIds, now, RETRY_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Record a send refused by the event endpoint for events, delaying their next attempt with a long backoff,
+     * since a proxy or captive portal may refuse all requests for a while.
+     * @param eventIds ids of the events that were refused
+     * @param now the current time in milliseconds
+     */
+    void recordRefusedAttempts(@NonNull long[] eventIds, long now) {
+        recordAttempts(eventIds, now, REFUSED_BACKOFF_MILLIS);
+    }
+
+    private void recordAttempts(@NonNull long[] eventIds, long now, long backoffMillis) {
+        if (eventIds.length == 0) {
+            return;
+        }
+
+        SQLiteStatement statement = null;
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            // the right hand side sees the attempt count before this update
+            statement = db.compileStatement("UPDATE " + EventTable.NAME + " SET " +
+                    EventTable.Column.ATTEMPT_COUNT + " = " + EventTable.Column.ATTEMPT_COUNT + " + 1, " +
+                    EventTable.Column.NEXT_ATTEMPT_AT + " = ? + (? << min(" + EventTable.Column.ATTEMPT_COUNT + ", " + MAX_BACKOFF_SHIFT + "))" +
+                    " WHERE " + EventTable._ID + " = ?");
+            db.beginTransaction();
+            try {
+                for (long eventId : eventIds) {
+                    statement.bindLong(1, now);
+                    statement.bindLong(2, backoffMillis);
+                    statement.bindLong(3, eventId);
+                    statement.executeUpdateDelete();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (Exception e) {
+            logger.error("Could not record failed attempts in db.", e);
+        } finally {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+    }
+
+    /**
+     * Drop stored events that are over the queue limits, in a single transaction.
+     * <p>
+     * Events older than the max age are dropped first, then events are dropped in the order of the
+     * eviction policy until the queue is within the max rows and the max (compressed) bytes.
+     *
+     * @param limits the queue limits
+     * @param now the current time in milliseconds
+     * @return the number of events dropped
+     */
+    int evictEvents(@NonNull EventQueueLimits limits, long now) {
+        if (!limits.isEnabled()) {
+            return 0;
+        }
+
+        int numRowsDeleted = 0;
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                if (limits.maxAgeMillis > 0) {
+                    numRowsDeleted += db.delete(EventTable.NAME, EventTable.Column.CREATED_AT + " < ?",
+                            new String[]{String.valueOf(now - limits.maxAgeMillis)});
+                }
+
+                if (limits.maxRows > 0) {
+                    long excessRows = DatabaseUtils.queryNumEntries(db, EventTable.NAME) - limits.maxRows;
+                    if (excessRows > 0) {
+                        numRowsDeleted += db.delete(EventTable.NAME, EventTable._ID + " IN (SELECT " + EventTable._ID +
+                                " FROM " + EventTable.NAME + " ORDER BY " + limits.policy.evictionOrder +
+                                " LIMIT " + excessRows + ")", null);
+                    }
+                }
+
+                if (limits.maxBytes > 0) {
+                    numRowsDeleted += evictBytes(db, limits);
+                }
+
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (Exception e) {
+            logger.error("Could not evict events from db.", e);
+            return 0;
+        }
+
+        if (numRowsDeleted > 0) {
+            logger.warn("Evicted {} events over the event queue limits", numRowsDeleted);
+        }
+        return numRowsDeleted;
+    }
+
+    private int evictBytes(SQLiteDatabase db, EventQueueLimits limits) {
+        String bodySize = "length(" + EventTable.Column.BODY + ")";
+        long excessBytes = DatabaseUtils.longForQuery(db,
+                "SELECT IFNULL(SUM(" + bodySize + "), 0) FROM " + EventTable.NAME, null) - limits.maxBytes;
+        if (excessBytes <= 0) {
+            return 0;
+        }
+
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = db.query(EventTable.NAME, new String[]{EventTable._ID, bodySize},
+                null, null, null, null, limits.policy.evictionOrder);
+        try {
+            while (excessBytes > 0 && cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+                excessBytes -= cursor.getLong(1);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        int numRowsDeleted = 0;
+        SQLiteStatement statement = db.compileStatement("DELETE FROM " + EventTable.NAME + " WHERE " + EventTable._ID + " = ?");
+        try {
+            for (long id : ids) {
+                statement.bindLong(1, id);
+                numRowsDeleted += statement.executeUpdateDelete();
+            }
+        } finally {
+            statement.close();
+        }
+        return numRowsDeleted;
+    }
+
+    /**
+     * @return the time in milliseconds when the first stored event is due to be sent, -1 if there are no events.
+     */
+    long getNextAttemptAt() {
+        try {
+            return DatabaseUtils.longForQuery(dbHelper.getReadableDatabase(),
+                    "SELECT IFNULL(MIN(" + EventTable.Column.NEXT_ATTEMPT_AT + "), -1) FROM " + EventTable.NAME, null);
+        } catch (Exception e) {
+            logger.error("Could not read the next attempt time from db.", e);
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of events in the SQLite queue, due or not.
+     */
+    long countEvents() {
+        try {
+            return DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), EventTable.NAME);
+        } catch (Exception e) {
+            logger.error("Could not count events in db.", e);
+        }
+        return 0;
+    }
+
+    /**
+     * @return the number of events in each priority lane of the SQLite queue, due or not.
+     */
+    @NonNull
+    Map<EventType, Long> countEventsByType() {
+        Map<EventType, Long> counts = new HashMap<>();
+        for (EventType type : EventType.values()) {
+            counts.put(type, 0L);
+        }
+
+        Cursor cursor = null;
+        try {
+            cursor = dbHelper.getReadableDatabase().query(EventTable.NAME,
+                    new String[]{EventTable.Column.EVENT_TYPE, "COUNT(*)"},
+                    null, null, EventTable.Column.EVENT_TYPE, null, null);
+            while (cursor.moveToNext()) {
+                EventType type = EventType.fromValue(cursor.getString(0));
+                counts.put(type, counts.get(type) + cursor.getLong(1));
+            }
+        } catch (Exception e) {
+            logger.error("Could not count events in db.", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return counts;
+    }
+
     /**
      * Close the SQLite DB.
      */
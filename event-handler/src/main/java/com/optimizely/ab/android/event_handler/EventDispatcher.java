@@ -22,15 +22,25 @@ import android.util.Pair;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
+import com.optimizely.ab.android.shared.Client;
 import com.optimizely.ab.android.shared.CountingIdlingResourceManager;
+import com.optimizely.ab.android.shared.NetworkMonitor;
+import com.optimizely.ab.android.shared.NetworkStateProvider;
 import com.optimizely.ab.android.shared.OptlyStorage;
 
 import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Iterator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Dispatches {@link Event} instances.
@@ -42,20 +52,123 @@ import java.util.List;
 @VisibleForTesting(otherwise = VisibleForTesting.PACKAGE_PRIVATE)
 public class EventDispatcher {
 
+    // OptlyStorage key for the max size of a merged request body when draining storage (batching is disabled when <= 0)
+    static final String KEY_MAX_BATCH_BYTES = "EVENT_MAX_BATCH_BYTES";
+    // OptlyStorage key for the max number of requests in flight when draining storage
+    static final String KEY_MAX_CONCURRENT_REQUESTS = "EVENT_MAX_CONCURRENT_REQUESTS";
+    // the upper bound of the max number of requests in flight
+    static final int MAX_CONCURRENT_REQUESTS = 8;
+    // the max number of stored events read into memory at a time
+    static final int PAGE_SIZE = 100;
+
+    // held while stored events are read and sent, so the SDK thread and a drain never send the same row
+    private static final Object sendLock = new Object();
+
     @NonNull private final Context context;
     @NonNull private final EventDAO eventDAO;
     @NonNull private final EventClient eventClient;
     @NonNull private final Logger logger;
     @NonNull private final OptlyStorage optlyStorage;
+    @NonNull private final NetworkBatchingPolicy networkBatchingPolicy;
+    // set when the event endpoint asked clients to back off, so the rest of the queue waits
+    private boolean queuePaused;
+    // how long the event endpoint asked clients to back off, when the queue is paused
+    private long pausedMillis;
 
-    EventDispatcher(@NonNull Context context, @NonNull OptlyStorage optlyStorage, @NonNull EventDAO eventDAO, @NonNull EventClient eventClient, @NonNull Logger logger) {
+    EventDispatcher(@NonNull Context context, @NonNull OptlyStorage optlyStorage, @NonNull EventDAO eventDAO, @NonNull EventClient eventClient,
+                    @NonNull NetworkStateProvider networkStateProvider, @NonNull Logger logger) {
         this.context = context;
         this.optlyStorage = optlyStorage;
         this.eventDAO = eventDAO;
         this.eventClient = eventClient;
+        this.networkBatchingPolicy = new NetworkBatchingPolicy(networkStateProvider);
         this.logger = logger;
     }
 
+    /**
+     * Creates a dispatcher sending with a new {@link EventClient} and storing in the default event queue.
+     *
+     * @param context any valid Android {@link Context}
+     * @return a new instance of {@link EventDispatcher}
+     */
+    static EventDispatcher getInstance(@NonNull Context context) {
+        OptlyStorage optlyStorage = new OptlyStorage(context);
+        EventClient eventClient = new EventClient(new Client(optlyStorage,
+                LoggerFactory.getLogger(Client.class)), LoggerFactory.getLogger(EventClient.class));
+        EventDAO eventDAO = EventDAO.getInstance(context, "1", LoggerFactory.getLogger(EventDAO.class));
+        return new EventDispatcher(context, optlyStorage, eventDAO, eventClient, NetworkMonitor.getInstance(context),
+                LoggerFactory.getLogger(EventDispatcher.class));
+    }
+
+    /**
+     * Store an event without sending it, to be sent by a drain of storage or by {@link #dispatchStored(long)}.
+     *
+     * @param url the event url
+     * @param body the event request body
+     * @return the id of the stored event, or -1 if the event was not stored
+     */
+    long enqueue(String url, String body) {
+        try {
+            long eventId = eventDAO.insertEvent(new Event(new URL(url), body));
+            if (eventId != -1) {
+                enforceQueueLimits(System.currentTimeMillis());
+            }
+            return eventId;
+        } catch (MalformedURLException e) {
+            logger.error("Received a malformed URL in event handler", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Send a stored event and remove it from storage once sent
+     * <p>
+     * Waits for a running drain, which may have sent the event already.
+     *
+     * @param eventId id of the stored event
+     * @return true if the event was sent or is no longer stored, otherwise false
+     */
+    boolean dispatchStored(long eventId) {
+        synchronized (sendLock) {
+            return sendStored(eventId);
+        }
+    }
+
+    private boolean sendStored(long eventId) {
+        try {
+            Event event = eventDAO.getEvent(eventId);
+            if (event == null) {
+                // already sent by a drain of storage, or evicted
+                logger.info("Stored event {} is no longer in storage", eventId);
+                return true;
+            }
+
+            queuePaused = false;
+            if (isPaused(event)) {
+                return false;
+            }
+
+            switch (eventClient.send(event)) {
+                case SENT:
+                    removeSentEvents(new long[]{eventId});
+                    CountingIdlingResourceManager.decrement();
+                    CountingIdlingResourceManager.recordEvent(new Pair<>(event.getURL().toString(), event.getRequestBody()));
+                    return true;
+                case REJECTED:
+                    removeRejectedEvents(new long[]{eventId});
+                    return true;
+                case REFUSED:
+                    eventDAO.recordRefusedAttempts(new long[]{eventId}, System.currentTimeMillis());
+                    return false;
+                default:
+                    eventDAO.recordFailedAttempts(new long[]{eventId}, System.currentTimeMillis());
+                    return false;
+            }
+        } finally {
+            eventDAO.closeDb();
+        }
+    }
+
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     public boolean dispatch(String url, String body) {
         boolean dispatched = false;
@@ -77,49 +190,360 @@ public class EventDispatcher {
 
     /**
      * Dispatch all events in storage
+     * <p>
+     * Storage is read one page at a time so memory use does not grow with the size of the queue.
+     * Priority lanes are drained in order, so a backlog of impressions does not delay conversions.
+     * The drain stops early when the event endpoint asks clients to back off (429 or 503), or fails or refuses
+     * a request, so the rest of the queue waits for the retry instead of failing the same way.
+     * With network-aware batching enabled, the batch size and compression follow the current network.
+     * <p>
+     * Events that fail to send stay in storage with a backoff delay, see {@link #getNextDrainDelay()}.
+     * <p>
+     * Drains and {@link #dispatchStored(long)} run one at a time in the process, so an event is not sent twice.
      *
-     * @return true if all events were dispatched, otherwise false
+     * @return true if all due events were dispatched, otherwise false
      */
     protected boolean dispatch() {
-        List<Pair<Long, Event>> events = eventDAO.getEvents();
-        Iterator<Pair<Long,Event>> iterator = events.iterator();
-        while (iterator.hasNext()) {
-            Pair<Long, Event> event = iterator.next();
-            boolean eventWasSent = eventClient.sendEvent(event.second);
-            if (eventWasSent) {
-                iterator.remove();
-                boolean eventWasDeleted = eventDAO.removeEvent(event.first);
-                if (!eventWasDeleted) {
-                    logger.warn("Unable to delete an event from local storage that was sent to successfully");
+        synchronized (sendLock) {
+            return drain();
+        }
+    }
+
+    private boolean drain() {
+        long maxBatchBytes = optlyStorage.getLong(KEY_MAX_BATCH_BYTES, -1);
+        // set for this drain only, the client may be shared with other dispatchers
+        EventClient.Compression compression = EventClient.Compression.getDefault();
+        if (NetworkBatchingPolicy.isEnabled(optlyStorage)) {
+            NetworkBatchingPolicy.Settings settings = networkBatchingPolicy.current();
+            logger.debug("Draining stored events with {} byte batches{}", settings.maxBatchBytes,
+                    settings.isDeferred() ? " on a deferred network" : "");
+            maxBatchBytes = settings.maxBatchBytes;
+            compression = new EventClient.Compression(settings.gzipThreshold, settings.gzipLevel);
+        }
+        EventBatcher batcher = maxBatchBytes > 0 ? new EventBatcher(maxBatchBytes, logger) : null;
+        int maxInFlight = (int) Math.max(1, Math.min(
+                optlyStorage.getLong(KEY_MAX_CONCURRENT_REQUESTS, 1), MAX_CONCURRENT_REQUESTS));
+
+        long now = System.currentTimeMillis();
+        enforceQueueLimits(now);
+
+        queuePaused = false;
+        boolean allSent = true;
+        for (EventType lane : EventType.byPriority()) {
+            long afterId = 0;
+            List<Pair<Long, Event>> events;
+            while (!queuePaused && !(events = eventDAO.getDueEvents(lane, afterId, PAGE_SIZE, now)).isEmpty()) {
+                boolean pageSent = batcher != null
+                        ? dispatchBatches(batcher, events, maxInFlight, compression)
+                        : dispatchEvents(events, maxInFlight, compression);
+                allSent = allSent && pageSent;
+                afterId = events.get(events.size() - 1).first;
+            }
+        }
+
+        return allSent && !queuePaused;
+    }
+
+    /**
+     * Get when stored events are due to be sent again: the first retry time of the events that failed to send,
+     * or the end of the pause asked by the event endpoint.
+     *
+     * @return the delay in milliseconds before the next drain of storage, -1 if storage is empty
+     */
+    long getNextDrainDelay() {
+        try {
+            long nextAttemptAt = eventDAO.getNextAttemptAt();
+            if (nextAttemptAt < 0) {
+                return -1;
+            }
+            long delay = Math.max(0, nextAttemptAt - System.currentTimeMillis());
+            return queuePaused ? Math.max(delay, pausedMillis) : delay;
+        } finally {
+            eventDAO.closeDb();
+        }
+    }
+
+    /**
+     * @return the number of stored events in each priority lane
+     */
+    @NonNull
+    Map<String, Long> countEventsByType() {
+        try {
+            Map<String, Long> counts = new HashMap<>();
+            for (Map.Entry<EventType, Long> count : eventDAO.countEventsByType().entrySet()) {
+                counts.put(count.getKey().value, count.getValue());
+            }
+            return counts;
+        } finally {
+            eventDAO.closeDb();
+        }
+    }
+
+    /**
+     * Dispatch a page of stored events one by one.
+     *
+     * @param events stored events with their row ids
+     * @param maxInFlight the max number of requests in flight
+     * @param compression the gzip content encoding of the requests
+     * @return true if all events were dispatched, otherwise false
+     */
+    private boolean dispatchEvents(List<Pair<Long, Event>> events, int maxInFlight, EventClient.Compression compression) {
+        List<EventBatcher.Batch> requests = new ArrayList<>(events.size());
+        for (Pair<Long, Event> event : events) {
+            requests.add(new EventBatcher.Batch(event.second, new long[]{event.first}));
+        }
+        return sendRequests(requests, maxInFlight, compression, new Acknowledgements(false));
+    }
+
+    /**
+     * Dispatch a page of stored events, merging events for the same endpoint into multi-visitor requests.
+     * <p>
+     * All the rows of a merged request are removed once the request is sent.  When the event endpoint rejects
+     * a merged request as invalid or too large, its events are sent again one by one, so only invalid events
+     * are dropped.
+     *
+     * @param batcher merges events into size-capped requests
+     * @param events stored events with their row ids
+     * @param maxInFlight the max number of requests in flight
+     * @param compression the gzip content encoding of the requests
+     * @return true if all events were dispatched, otherwise false
+     */
+    private boolean dispatchBatches(EventBatcher batcher, List<Pair<Long, Event>> events, int maxInFlight,
+                                    EventClient.Compression compression) {
+        List<EventBatcher.Batch> batches = batcher.batch(events);
+
+        // one transaction per request so a killed worker re-sends at most the batches in flight
+        Acknowledgements acks = new Acknowledgements(true);
+        boolean allSent = sendRequests(batches, maxInFlight, compression, acks);
+
+        logger.info("Dispatched {} stored events in {} requests", events.size(), batches.size());
+
+        if (!acks.splitIds.isEmpty() && !queuePaused) {
+            logger.warn("Event endpoint rejected merged requests, sending their {} events one by one", acks.splitIds.size());
+            List<Pair<Long, Event>> split = new ArrayList<>(acks.splitIds.size());
+            for (Pair<Long, Event> event : events) {
+                if (acks.splitIds.contains(event.first)) {
+                    split.add(event);
                 }
             }
+            allSent = dispatchEvents(split, maxInFlight, compression) && allSent;
+        }
+        return allSent;
+    }
+
+    /**
+     * Send the requests of a page of stored events, with up to {@code maxInFlight} requests in flight.
+     * <p>
+     * Outcomes are handled in storage order, on the calling thread: a slow request delays the removal of the rows
+     * stored after it, not the sending of the next requests.  Once a request fails no more requests are sent;
+     * the requests already in flight are still handled, so their rows are removed if they were sent.
+     *
+     * @param requests the requests, in storage order
+     * @param maxInFlight the max number of requests in flight
+     * @param compression the gzip content encoding of the requests
+     * @param acks handles the outcome of each request
+     * @return true if all requests were sent, rejected or split, otherwise false
+     */
+    private boolean sendRequests(List<EventBatcher.Batch> requests, int maxInFlight, EventClient.Compression compression,
+                                 Acknowledgements acks) {
+        Deque<Pair<EventBatcher.Batch, EventClient.PendingSend>> inFlight = new ArrayDeque<>();
+        for (EventBatcher.Batch request : requests) {
+            if (maxInFlight > 1 && inFlight.size() == maxInFlight) {
+                Pair<EventBatcher.Batch, EventClient.PendingSend> oldest = inFlight.poll();
+                acks.add(oldest.first, oldest.second.await());
+            }
+            if (isPaused(request.event)) {
+                break;
+            }
+            if (maxInFlight > 1) {
+                inFlight.add(new Pair<>(request, eventClient.sendAsync(request.event, compression)));
+            } else {
+                acks.add(request, eventClient.send(request.event, compression));
+            }
         }
+        while (!inFlight.isEmpty()) {
+            Pair<EventBatcher.Batch, EventClient.PendingSend> oldest = inFlight.poll();
+            acks.add(oldest.first, oldest.second.await());
+        }
+        acks.flush();
 
-        return events.isEmpty();
+        return acks.count == requests.size();
+    }
+
+    /**
+     * Updates storage with the outcome of requests for stored events.
+     */
+    private class Acknowledgements {
+        private final boolean removeEachRequest;
+        private final List<Long> sentIds = new ArrayList<>();
+        private final List<Long> rejectedIds = new ArrayList<>();
+        private final List<Long> refusedIds = new ArrayList<>();
+        private final List<Long> failedIds = new ArrayList<>();
+        // rows of rejected merged requests, left in storage to be sent one by one
+        final Set<Long> splitIds = new HashSet<>();
+        // the number of requests sent, rejected or split
+        private int count;
+
+        /**
+         * @param removeEachRequest true to update storage after each request, otherwise on {@link #flush()}
+         */
+        Acknowledgements(boolean removeEachRequest) {
+            this.removeEachRequest = removeEachRequest;
+        }
+
+        void add(EventBatcher.Batch request, EventClient.SendResult result) {
+            List<Long> ids;
+            switch (result) {
+                case SENT:
+                    ids = sentIds;
+                    count++;
+                    break;
+                case REJECTED:
+                    // a merged request may be rejected for some of its events, or for its size
+                    ids = request.ids.length > 1 ? null : rejectedIds;
+                    count++;
+                    break;
+                case REFUSED:
+                    ids = refusedIds;
+                    stop(EventDAO.REFUSED_BACKOFF_MILLIS);
+                    break;
+                default:
+                    ids = failedIds;
+                    stop(EventDAO.RETRY_BACKOFF_MILLIS);
+                    break;
+            }
+            for (long id : request.ids) {
+                if (ids != null) {
+                    ids.add(id);
+                } else {
+                    splitIds.add(id);
+                }
+            }
+            if (removeEachRequest) {
+                flush();
+            }
+        }
+
+        /**
+         * Stop sending the queue after a request was not sent, as when the event endpoint asks clients to back off.
+         * @param delayMillis the min delay before the next drain
+         */
+        private void stop(long delayMillis) {
+            if (!queuePaused) {
+                logger.info("Event request was not sent, stopping dispatch for {} ms", delayMillis);
+                queuePaused = true;
+                pausedMillis = delayMillis;
+            } else {
+                pausedMillis = Math.max(pausedMillis, delayMillis);
+            }
+        }
+
+        void flush() {
+            removeSentEvents(toArray(sentIds));
+            removeRejectedEvents(toArray(rejectedIds));
+            long now = System.currentTimeMillis();
+            eventDAO.recordRefusedAttempts(toArray(refusedIds), now);
+            eventDAO.recordFailedAttempts(toArray(failedIds), now);
+            sentIds.clear();
+            rejectedIds.clear();
+            refusedIds.clear();
+            failedIds.clear();
+        }
+    }
+
+    private static long[] toArray(List<Long> list) {
+        long[] ids = new long[list.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = list.get(i);
+        }
+        return ids;
+    }
+
+    /**
+     * Remove sent events from storage in a single transaction
+     *
+     * @param ids ids of the stored events that were sent
+     */
+    private void removeSentEvents(long[] ids) {
+        int numRowsDeleted = eventDAO.removeEvents(ids);
+        if (numRowsDeleted < ids.length) {
+            logger.warn("Unable to delete {} events from local storage that were sent to successfully", ids.length - numRowsDeleted);
+        }
+    }
+
+    /**
+     * Remove events rejected by the event endpoint as invalid, since sending them again fails the same way
+     *
+     * @param ids ids of the stored events that were rejected
+     */
+    private void removeRejectedEvents(long[] ids) {
+        if (ids.length > 0) {
+            logger.error("Dropping {} events rejected by the event endpoint", ids.length);
+            eventDAO.removeEvents(ids);
+        }
+    }
+
+    /**
+     * @param event the next event to send
+     * @return true if the event endpoint asked clients to back off, so sending should stop for now
+     */
+    private boolean isPaused(Event event) {
+        long pausedMillis = eventClient.getPausedMillis(event);
+        if (pausedMillis > 0) {
+            logger.info("Event endpoint is paused for {} ms, stopping dispatch", pausedMillis);
+            queuePaused = true;
+            this.pausedMillis = pausedMillis;
+        }
+        return queuePaused;
     }
 
     /**
      * Send a single event
      *
      * @param event an {@link Event} instance to attempt to dispatch
-     * @return true if event was sent to network, otherwise false if stored
+     * @return true if event was sent to network or rejected as invalid, otherwise false if stored
      */
     private boolean dispatch(Event event) {
-        boolean eventWasSent = eventClient.sendEvent(event);
+        EventClient.SendResult result = eventClient.send(event);
 
-        if (eventWasSent) {
+        if (result == EventClient.SendResult.SENT) {
             CountingIdlingResourceManager.decrement();
             CountingIdlingResourceManager.recordEvent(new Pair<>(event.getURL().toString(), event.getRequestBody()));
             return true;
+        } else if (result == EventClient.SendResult.REJECTED) {
+            logger.error("Event rejected by the event endpoint as invalid, dropping {}", event);
+            return true;
         } else {
-            boolean eventWasStored = eventDAO.storeEvent(event);
-            if (!eventWasStored) {
+            long eventId = eventDAO.insertEvent(event);
+            if (eventId == -1) {
                 logger.error("Unable to send or store event {}", event);
                 // Return true since nothing was stored
                 return true;
             } else {
+                long now = System.currentTimeMillis();
+                // the first attempt backs off like the later ones
+                if (result == EventClient.SendResult.REFUSED) {
+                    eventDAO.recordRefusedAttempts(new long[]{eventId}, now);
+                } else {
+                    eventDAO.recordFailedAttempts(new long[]{eventId}, now);
+                }
+                enforceQueueLimits(now);
                 return false;
             }
         }
     }
+
+    /**
+     * Drop stored events over the queue limits and add them to the evicted event count.
+     *
+     * @param now the current time in milliseconds
+     */
+    private void enforceQueueLimits(long now) {
+        EventQueueLimits limits = EventQueueLimits.load(optlyStorage);
+        int evicted = eventDAO.evictEvents(limits, now);
+        if (evicted > 0) {
+            long total = optlyStorage.getLong(EventQueueLimits.KEY_EVICTED_COUNT, 0) + evicted;
+            optlyStorage.saveLong(EventQueueLimits.KEY_EVICTED_COUNT, total);
+        }
+    }
 }
@@ -0,0 +1,70 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.event_handler;
+
+import androidx.annotation.NonNull;
+
+import com.optimizely.ab.android.shared.OptlyStorage;
+
+/**
+ * Size limits of the stored event queue.
+ * <p>
+ * The limits are persisted in {@link OptlyStorage} by {@link DefaultEventHandler} and read back by
+ * {@link EventDispatcher}, since events are stored from a worker that may run after an app restart.
+ * A limit of 0 or less is disabled.
+ */
+class EventQueueLimits {
+
+    static final String KEY_MAX_ROWS = "EVENT_QUEUE_MAX_ROWS";
+    static final String KEY_MAX_BYTES = "EVENT_QUEUE_MAX_BYTES";
+    static final String KEY_MAX_AGE = "EVENT_QUEUE_MAX_AGE";
+    static final String KEY_EVICTION_POLICY = "EVENT_QUEUE_EVICTION_POLICY";
+    // total number of events evicted from the queue
+    static final String KEY_EVICTED_COUNT = "EVENT_QUEUE_EVICTED_COUNT";
+
+    final long maxRows;
+    final long maxBytes;
+    final long maxAgeMillis;
+    @NonNull final EvictionPolicy policy;
+
+    EventQueueLimits(long maxRows, long maxBytes, long maxAgeMillis, @NonNull EvictionPolicy policy) {
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.policy = policy;
+    }
+
+    boolean isEnabled() {
+        return maxRows > 0 || maxBytes > 0 || maxAgeMillis > 0;
+    }
+
+    @NonNull
+    static EventQueueLimits load(@NonNull OptlyStorage storage) {
+        EvictionPolicy policy;
+        try {
+            policy = EvictionPolicy.valueOf(storage.getString(KEY_EVICTION_POLICY, EvictionPolicy.DROP_BY_TYPE.name()));
+        } catch (IllegalArgumentException e) {
+            policy = EvictionPolicy.DROP_BY_TYPE;
+        }
+
+        return new EventQueueLimits(
+                storage.getLong(KEY_MAX_ROWS, -1),
+                storage.getLong(KEY_MAX_BYTES, -1),
+                storage.getLong(KEY_MAX_AGE, -1),
+                policy);
+    }
+}
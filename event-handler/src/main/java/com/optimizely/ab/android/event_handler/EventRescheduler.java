@@ -19,23 +19,32 @@ package com.optimizely.ab.android.event_handler;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.net.NetworkInfo;
 import android.net.wifi.WifiManager;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.work.Data;
 
+import com.optimizely.ab.android.shared.NetworkMonitor;
+import com.optimizely.ab.android.shared.NetworkState;
+import com.optimizely.ab.android.shared.NetworkStateProvider;
+import com.optimizely.ab.android.shared.OptlyStorage;
 import com.optimizely.ab.android.shared.WorkerScheduler;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Reschedules event flushing after package updates and reboots
+ * Reschedules event flushing after package updates and reboots, and flushes stored events when the device
+ * gets internet back
  * <p>
  * After the app is updated or the phone is rebooted the event flushing
  * jobs scheduled by {@link WorkerScheduler} are cancelled.
  * <p>
+ * Manifest receivers no longer get connectivity broadcasts, so reconnects are followed with a
+ * {@link NetworkMonitor} callback registered by {@link #flushOnReconnect(Context)} while the SDK is in use.
+ * <p>
  * This code is called by the Android Framework.  The Intent Filters are registered
  * AndroidManifest.xml.
  * <pre>
@@ -44,7 +53,6 @@ import org.slf4j.LoggerFactory;
  *  <intent-filter>
  *      <action android:name="android.intent.action.MY_PACKAGE_REPLACED" />
  *      <action android:name="android.intent.action.BOOT_COMPLETED" />
- *      <action android:name="android.net.wifi.supplicant.CONNECTION_CHANGE" />
  *  </intent-filter>
  * </receiver>
  * }
@@ -54,6 +62,75 @@ public class EventRescheduler extends BroadcastReceiver {
 
     Logger logger = LoggerFactory.getLogger(EventRescheduler.class);
 
+    // drains stored events on reconnect, registered once per process
+    @Nullable private static NetworkMonitor.Listener reconnectListener;
+
+    /**
+     * Drain stored events as soon as the device gets validated internet, for the life of the process.
+     *
+     * @param context any valid Android {@link Context}
+     */
+    static synchronized void flushOnReconnect(@NonNull Context context) {
+        if (reconnectListener != null) {
+            return;
+        }
+
+        final Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        final Logger logger = LoggerFactory.getLogger(EventRescheduler.class);
+        reconnectListener = new NetworkMonitor.Listener() {
+            @Override
+            public void onInternetAvailable(@NonNull NetworkState state) {
+                flushInBackground(appContext, logger);
+                logger.info("Flushing stored events since internet became available");
+            }
+        };
+        if (!NetworkMonitor.getInstance(appContext).addListener(reconnectListener)) {
+            logger.warn("Unable to monitor the network, stored events are flushed with the next event");
+        }
+    }
+
+    /**
+     * Drain stored events now if there are any, on the SDK thread since storage is queried,
+     * not on the thread of a network callback or a broadcast.
+     *
+     * @param context current context
+     * @param logger logs a failure to start the drain
+     */
+    private static void flushInBackground(@NonNull final Context context, @NonNull final Logger logger) {
+        WorkerScheduler.runInProcess(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    EventDAO eventDAO = EventDAO.getInstance(context, "1", LoggerFactory.getLogger(EventDAO.class));
+                    try {
+                        if (eventDAO.countEvents() == 0) {
+                            return;
+                        }
+                    } finally {
+                        eventDAO.closeDb();
+                    }
+                    flushNow(context);
+                } catch (Exception e) {
+                    logger.warn("WorkScheduler failed to reschedule an event service: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Drain stored events now, unless a drain is queued, with the retry interval of the event handler.
+     * <p>
+     * The drain is appended to a running drain, so neither is cancelled, and it keeps retrying events that fail
+     * again.  Queued drains are not delayed, since delayed drains are started by a timer.
+     *
+     * @param context current context
+     */
+    @VisibleForTesting
+    static void flushNow(@NonNull Context context) {
+        long retryInterval = new OptlyStorage(context).getLong(DefaultEventHandler.KEY_DISPATCH_INTERVAL, -1);
+        EventWorker.startExpeditedDrain(context, retryInterval);
+    }
+
     /**
      * Called when intent filter has kicked in.
      * @param context current context
@@ -87,9 +164,10 @@ public class EventRescheduler extends BroadcastReceiver {
             WorkerScheduler.startService(context, EventWorker.workerId, EventWorker.class, Data.EMPTY, -1L);
             logger.info("Rescheduling event flushing if necessary");
         } else if (broadcastIntent.getAction().equals(WifiManager.WIFI_STATE_CHANGED_ACTION)) {
-            NetworkInfo info = broadcastIntent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
-            if(info != null && info.isConnected()) {
-                WorkerScheduler.startService(context, EventWorker.workerId, EventWorker.class, Data.EMPTY, -1L);
+            // kept for apps registering this receiver at runtime, the intent no longer carries the network state
+            NetworkState state = getNetworkStateProvider(context).getNetworkState();
+            if (state.isConnected() && state.validated) {
+                flushInBackground(context.getApplicationContext() != null ? context.getApplicationContext() : context, logger);
                 logger.info("Preemptively flushing events since wifi became available");
             }
         } else {
@@ -97,4 +175,9 @@ public class EventRescheduler extends BroadcastReceiver {
         }
     }
 
+    @VisibleForTesting
+    NetworkStateProvider getNetworkStateProvider(@NonNull Context context) {
+        return NetworkMonitor.getInstance(context);
+    }
+
 }
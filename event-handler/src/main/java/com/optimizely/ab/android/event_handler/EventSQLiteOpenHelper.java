@@ -17,13 +17,17 @@
 package com.optimizely.ab.android.event_handler;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
+import com.optimizely.ab.android.shared.EventHandlerUtils;
+
 import org.slf4j.Logger;
 
 /**
@@ -31,19 +35,36 @@ import org.slf4j.Logger;
  */
 class EventSQLiteOpenHelper extends SQLiteOpenHelper {
 
-    static final int VERSION = 1;
+    static final int VERSION = 2;
     static final String DB_NAME = "optly-events-%s";
 
     static final String SQL_CREATE_EVENT_TABLE =
             "CREATE TABLE " + EventTable.NAME + " (" +
                     EventTable._ID + " INTEGER PRIMARY KEY, " +
                     EventTable.Column.URL + " TEXT NOT NULL," +
-                    EventTable.Column.REQUEST_BODY + " TEXT NOT NULL" +
+                    EventTable.Column.BODY + " BLOB NOT NULL," +
+                    EventTable.Column.CREATED_AT + " INTEGER NOT NULL DEFAULT 0," +
+                    EventTable.Column.ATTEMPT_COUNT + " INTEGER NOT NULL DEFAULT 0," +
+                    EventTable.Column.NEXT_ATTEMPT_AT + " INTEGER NOT NULL DEFAULT 0," +
+                    EventTable.Column.BYTE_SIZE + " INTEGER NOT NULL DEFAULT 0," +
+                    EventTable.Column.EVENT_TYPE + " TEXT NOT NULL DEFAULT '" + EventType.UNKNOWN.value + "'" +
             ")";
 
+    static final String SQL_CREATE_NEXT_ATTEMPT_INDEX =
+            "CREATE INDEX " + EventTable.NAME + "_" + EventTable.Column.NEXT_ATTEMPT_AT +
+                    " ON " + EventTable.NAME + " (" + EventTable.Column.NEXT_ATTEMPT_AT + ")";
+
+    // pages of a priority lane are read in row id order, which every index ends with
+    static final String SQL_CREATE_EVENT_TYPE_INDEX =
+            "CREATE INDEX " + EventTable.NAME + "_" + EventTable.Column.EVENT_TYPE +
+                    " ON " + EventTable.NAME + " (" + EventTable.Column.EVENT_TYPE + ")";
+
     private static final String SQL_DELETE_EVENT_TABLE =
             "DROP TABLE IF EXISTS " + EventTable.NAME;
 
+    // version 1 table, renamed while its rows are copied into the current schema
+    private static final String V1_TABLE_NAME = EventTable.NAME + "_v1";
+
     @NonNull private final Logger logger;
     @NonNull private final String projectId;
     @NonNull private final Context context;
@@ -65,6 +86,8 @@ class EventSQLiteOpenHelper extends SQLiteOpenHelper {
             // Deletes the old events db that stored events for all projects
             context.deleteDatabase("optly-events");
             db.execSQL(SQL_CREATE_EVENT_TABLE);
+            db.execSQL(SQL_CREATE_NEXT_ATTEMPT_INDEX);
+            db.execSQL(SQL_CREATE_EVENT_TYPE_INDEX);
             logger.info("Created event table with SQL: {}", SQL_CREATE_EVENT_TABLE);
         } catch (Exception e) {
             logger.error("Error creating optly-events table.", e);
@@ -78,7 +101,57 @@ class EventSQLiteOpenHelper extends SQLiteOpenHelper {
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            try {
+                migrateFromVersion1(db);
+                logger.info("Upgraded event table from version {} to {}", oldVersion, newVersion);
+            } catch (Exception e) {
+                logger.error("Error upgrading optly-events table, queued events are dropped.", e);
+                db.execSQL("DROP TABLE IF EXISTS " + V1_TABLE_NAME);
+                db.execSQL(SQL_DELETE_EVENT_TABLE);
+                db.execSQL(SQL_CREATE_EVENT_TABLE);
+                db.execSQL(SQL_CREATE_NEXT_ATTEMPT_INDEX);
+                db.execSQL(SQL_CREATE_EVENT_TYPE_INDEX);
+            }
+        }
+    }
+
+    /**
+     * Copies version 1 rows (TEXT bodies) into the current table (compressed BLOB bodies, retry metadata and event types).
+     * Runs inside the upgrade transaction, so a failure leaves no partial copy behind.
+     */
+    private void migrateFromVersion1(SQLiteDatabase db) throws Exception {
+        db.execSQL("ALTER TABLE " + EventTable.NAME + " RENAME TO " + V1_TABLE_NAME);
+        db.execSQL(SQL_CREATE_EVENT_TABLE);
+        db.execSQL(SQL_CREATE_NEXT_ATTEMPT_INDEX);
+        db.execSQL(SQL_CREATE_EVENT_TYPE_INDEX);
+
+        long now = System.currentTimeMillis();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + EventTable.NAME + " (" +
+                EventTable._ID + ", " + EventTable.Column.URL + ", " + EventTable.Column.BODY + ", " +
+                EventTable.Column.CREATED_AT + ", " + EventTable.Column.BYTE_SIZE + ", " +
+                EventTable.Column.EVENT_TYPE + ") VALUES (?, ?, ?, ?, ?, ?)");
+        Cursor cursor = db.query(V1_TABLE_NAME,
+                new String[]{EventTable._ID, EventTable.Column.URL, EventTable.Column.REQUEST_BODY},
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                String requestBody = cursor.getString(2);
+                byte[] body = requestBody.getBytes(EventDAO.BODY_CHARSET);
+                insert.bindLong(1, cursor.getLong(0));
+                insert.bindString(2, cursor.getString(1));
+                insert.bindBlob(3, EventHandlerUtils.compress(body));
+                insert.bindLong(4, now);
+                insert.bindLong(5, body.length);
+                insert.bindString(6, EventType.classify(requestBody).value);
+                insert.executeInsert();
+            }
+        } finally {
+            cursor.close();
+            insert.close();
+        }
 
+        db.execSQL("DROP TABLE " + V1_TABLE_NAME);
     }
 
     public String getDbName() {
@@ -30,6 +30,16 @@ final class EventTable implements BaseColumns {
     class Column {
         static final String _ID = BaseColumns._ID;
         static final String URL = "url";
+        // TEXT request body, only used by version 1 of the schema
         static final String REQUEST_BODY = "requestBody";
+        // Deflate compressed UTF-8 request body
+        static final String BODY = "body";
+        static final String CREATED_AT = "created_at";
+        static final String ATTEMPT_COUNT = "attempt_count";
+        static final String NEXT_ATTEMPT_AT = "next_attempt_at";
+        // size of the uncompressed request body
+        static final String BYTE_SIZE = "byte_size";
+        // an EventType value
+        static final String EVENT_TYPE = "event_type";
     }
 }
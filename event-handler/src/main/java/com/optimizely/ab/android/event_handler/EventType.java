@@ -0,0 +1,114 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.event_handler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The kind of a stored event, stored in {@link EventTable.Column#EVENT_TYPE}.
+ * <p>
+ * Each type is a priority lane of the event queue: higher priority lanes are drained first and evicted last.
+ */
+enum EventType {
+    IMPRESSION("impression", 2),
+    CONVERSION("conversion", 0),
+    UNKNOWN("unknown", 1);
+
+    // the event key of impression events in an EventBatch
+    static final String IMPRESSION_KEY = "campaign_activated";
+
+    @NonNull final String value;
+    // 0 for the highest priority
+    final int priority;
+
+    EventType(@NonNull String value, int priority) {
+        this.value = value;
+        this.priority = priority;
+    }
+
+    /**
+     * @return the lanes, highest priority first
+     */
+    @NonNull
+    static EventType[] byPriority() {
+        return new EventType[]{CONVERSION, UNKNOWN, IMPRESSION};
+    }
+
+    /**
+     * @param value a value of {@link EventTable.Column#EVENT_TYPE}
+     * @return the event type, {@link #UNKNOWN} for unexpected values
+     */
+    @NonNull
+    static EventType fromValue(@Nullable String value) {
+        for (EventType type : values()) {
+            if (type.value.equals(value)) {
+                return type;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @return an SQL expression of the priority of a stored event, 0 for the highest priority
+     */
+    @NonNull
+    static String prioritySql() {
+        StringBuilder sql = new StringBuilder("CASE ").append(EventTable.Column.EVENT_TYPE);
+        for (EventType type : values()) {
+            sql.append(" WHEN '").append(type.value).append("' THEN ").append(type.priority);
+        }
+        return sql.append(" ELSE ").append(UNKNOWN.priority).append(" END").toString();
+    }
+
+    /**
+     * Classify an EventBatch request body.  A batch with any conversion is a conversion.
+     *
+     * @param body the request body
+     * @return the event type, {@link #UNKNOWN} when the body is not an EventBatch
+     */
+    @NonNull
+    static EventType classify(@NonNull String body) {
+        // cheap check before parsing
+        if (!body.contains("\"visitors\"")) {
+            return UNKNOWN;
+        }
+
+        try {
+            EventType type = UNKNOWN;
+            JSONArray visitors = new JSONObject(body).getJSONArray("visitors");
+            for (int i = 0; i < visitors.length(); i++) {
+                JSONArray snapshots = visitors.getJSONObject(i).optJSONArray("snapshots");
+                for (int j = 0; snapshots != null && j < snapshots.length(); j++) {
+                    JSONArray events = snapshots.getJSONObject(j).optJSONArray("events");
+                    for (int k = 0; events != null && k < events.length(); k++) {
+                        if (!IMPRESSION_KEY.equals(events.getJSONObject(k).optString("key"))) {
+                            return CONVERSION;
+                        }
+                        type = IMPRESSION;
+                    }
+                }
+            }
+            return type;
+        } catch (Exception e) {
+            return UNKNOWN;
+        }
+    }
+}
@@ -21,23 +21,39 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
-import com.optimizely.ab.android.shared.Client;
 import com.optimizely.ab.android.shared.EventHandlerUtils;
-import com.optimizely.ab.android.shared.OptlyStorage;
+import com.optimizely.ab.android.shared.WorkerScheduler;
 import com.optimizely.ab.event.LogEvent;
 
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class EventWorker extends Worker {
     public static final String workerId = "EventWorker";
+    // unique work name of the coalesced drain of stored events
+    public static final String drainWorkName = "EventWorkerDrain";
+    // unique work name of the timer starting a drain later, when stored events are due or after a flush delay
+    public static final String drainTimerWorkName = "EventWorkerDrainTimer";
 
     public static final String KEY_EVENT_URL = "url";
     public static final String KEY_EVENT_BODY = "body";
     public static final String KEY_EVENT_BODY_COMPRESSED = "bodyCompressed";
     public static final String KEY_EVENT_RETRY_INTERVAL = "retryInterval";
+    // id of an event already in storage, passed instead of its url and body
+    public static final String KEY_EVENT_ID = "eventId";
+    // when a drain timer was set to fire, in milliseconds since the epoch
+    public static final String KEY_DRAIN_TIMER_AT = "drainTimerAt";
+
+    // set while a drain is enqueued and has not started reading storage, so a burst of events enqueues one drain
+    @VisibleForTesting
+    static final AtomicBoolean drainQueued = new AtomicBoolean();
+    // when the pending drain timer fires, Long.MAX_VALUE when there is none
+    @VisibleForTesting
+    static final AtomicLong drainTimerAt = new AtomicLong(Long.MAX_VALUE);
 
     @VisibleForTesting
     public EventDispatcher eventDispatcher;
@@ -45,27 +61,46 @@ public class EventWorker extends Worker {
     public EventWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
         super(context, workerParams);
 
-        OptlyStorage optlyStorage = new OptlyStorage(context);
-        EventClient eventClient = new EventClient(new Client(optlyStorage,
-                LoggerFactory.getLogger(Client.class)), LoggerFactory.getLogger(EventClient.class));
-        EventDAO eventDAO = EventDAO.getInstance(context, "1", LoggerFactory.getLogger(EventDAO.class));
-        eventDispatcher = new EventDispatcher(context, optlyStorage, eventDAO, eventClient, LoggerFactory.getLogger(EventDispatcher.class));
+        eventDispatcher = EventDispatcher.getInstance(context);
     }
 
     @NonNull
     @Override
     public Result doWork() {
         Data inputData = getInputData();
-        String url = getUrlFromInputData(inputData);
-        String body = getEventBodyFromInputData(inputData);
+        long eventId = getEventIdFromInputData(inputData);
         long interval = getRetryIntervalFromInputData(inputData);
 
         boolean dispatched = true;
 
-        if (isEventValid(url, body)) {
-            dispatched = eventDispatcher.dispatch(url, body);
+        long timerAt = inputData.getLong(KEY_DRAIN_TIMER_AT, -1);
+        if (timerAt > 0) {
+            // a later timer may have been set since this one, it is kept
+            drainTimerAt.compareAndSet(timerAt, Long.MAX_VALUE);
+            startDrain(getApplicationContext(), interval, 0);
+            return Result.success();
+        }
+
+        if (eventId > 0) {
+            dispatched = eventDispatcher.dispatchStored(eventId);
         } else {
-            dispatched = eventDispatcher.dispatch();
+            String url = getUrlFromInputData(inputData);
+            String body = getEventBodyFromInputData(inputData);
+
+            if (isEventValid(url, body)) {
+                dispatched = eventDispatcher.dispatch(url, body);
+            } else {
+                // events stored from now on need another drain
+                drainQueued.set(false);
+                eventDispatcher.dispatch();
+                // events that failed to send back off in storage, so the drain is not retried
+                if (interval > 0) {
+                    long nextDrainDelay = eventDispatcher.getNextDrainDelay();
+                    if (nextDrainDelay >= 0) {
+                        startDrain(getApplicationContext(), interval, nextDrainDelay);
+                    }
+                }
+            }
         }
 
         if (interval > 0) {
@@ -75,6 +110,92 @@ public class EventWorker extends Worker {
         }
     }
 
+    /**
+     * Start a drain of stored events under the unique {@link #drainWorkName}, unless one is queued.
+     * <p>
+     * A queued drain picks up every event stored before it starts reading storage.  Otherwise the drain is
+     * appended to the unique work, so an event stored while a drain runs (after its last read) is drained
+     * once that drain completes, instead of waiting for the next event.
+     * <p>
+     * A delayed drain is started by a timer under the unique {@link #drainTimerWorkName} instead, so it never
+     * holds back the drain of a new event.  Events that failed to send are kept out of earlier drains by their
+     * next attempt time.
+     *
+     * @param context any valid Android {@link Context}
+     * @param retryInterval the dispatch retry interval in milliseconds (no retry when 0 or less)
+     * @param delay the delay before the drain runs in milliseconds
+     */
+    static void startDrain(@NonNull Context context, long retryInterval, long delay) {
+        if (delay > 0) {
+            startDrainTimer(context, retryInterval, delay);
+        } else {
+            queueDrain(context, retryInterval, false);
+        }
+    }
+
+    /**
+     * Start a drain of stored events now, as expedited work where it does not need a foreground service,
+     * unless one is queued.  See {@link #startDrain(Context, long, long)}.
+     *
+     * @param context any valid Android {@link Context}
+     * @param retryInterval the dispatch retry interval in milliseconds (no retry when 0 or less)
+     */
+    static void startExpeditedDrain(@NonNull Context context, long retryInterval) {
+        queueDrain(context, retryInterval, true);
+    }
+
+    private static void queueDrain(@NonNull Context context, long retryInterval, boolean expedited) {
+        if (!drainQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (expedited) {
+                WorkerScheduler.startExpeditedUniqueService(context, drainWorkName, workerId, EventWorker.class,
+                        getDrainData(retryInterval), retryInterval, ExistingWorkPolicy.APPEND_OR_REPLACE);
+            } else {
+                WorkerScheduler.startUniqueService(context, drainWorkName, workerId, EventWorker.class,
+                        getDrainData(retryInterval), retryInterval, ExistingWorkPolicy.APPEND_OR_REPLACE);
+            }
+        } catch (RuntimeException e) {
+            drainQueued.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Set the timer starting a drain after a delay, unless a pending timer fires sooner.
+     * <p>
+     * A later pending timer is replaced.  The timer only starts a drain, so replacing it while it runs
+     * cancels no requests.
+     *
+     * @param context any valid Android {@link Context}
+     * @param retryInterval the dispatch retry interval in milliseconds (no retry when 0 or less)
+     * @param delay the delay before the drain runs in milliseconds
+     */
+    private static void startDrainTimer(@NonNull Context context, long retryInterval, long delay) {
+        long timerAt = System.currentTimeMillis() + delay;
+        long pendingAt;
+        do {
+            pendingAt = drainTimerAt.get();
+            if (pendingAt <= timerAt) {
+                // the drain started by the pending timer sets the next one
+                return;
+            }
+        } while (!drainTimerAt.compareAndSet(pendingAt, timerAt));
+
+        Data data = new Data.Builder()
+                .putAll(getDrainData(retryInterval))
+                .putLong(KEY_DRAIN_TIMER_AT, timerAt)
+                .build();
+        try {
+            WorkerScheduler.startUniqueService(context, drainTimerWorkName, workerId, EventWorker.class,
+                    data, retryInterval, ExistingWorkPolicy.REPLACE, delay);
+        } catch (RuntimeException e) {
+            drainTimerAt.compareAndSet(timerAt, Long.MAX_VALUE);
+            throw e;
+        }
+    }
+
     public static Data getData(LogEvent event) {
         String url = event.getEndpointUrl();
         String body = event.getBody();
@@ -104,6 +225,36 @@ public class EventWorker extends Worker {
         return data;
     }
 
+    /**
+     * Input data for an event already in storage.  Only the row id is passed, so the body is neither
+     * copied into WorkManager's database nor compressed to fit {@link Data#MAX_DATA_BYTES}.
+     * @param eventId id of the stored event
+     * @param retryInterval the dispatch retry interval in milliseconds (no retry when 0 or less)
+     * @return the input data
+     */
+    public static Data dataForStoredEvent(long eventId, long retryInterval) {
+        Data.Builder builder = new Data.Builder()
+                .putLong(KEY_EVENT_ID, eventId);
+        if (retryInterval > 0) {
+            builder.putLong(KEY_EVENT_RETRY_INTERVAL, retryInterval);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Input data for a drain of stored events, without an event of its own.
+     * @param retryInterval the dispatch retry interval in milliseconds (no retry when 0 or less)
+     * @return the input data
+     */
+    public static Data getDrainData(long retryInterval) {
+        if (retryInterval > 0) {
+            return new Data.Builder()
+                    .putLong(KEY_EVENT_RETRY_INTERVAL, retryInterval)
+                    .build();
+        }
+        return Data.EMPTY;
+    }
+
     @VisibleForTesting
     public static Data compressEvent(String url, String body) {
         try {
@@ -153,6 +304,11 @@ public class EventWorker extends Worker {
         return data.getString(KEY_EVENT_URL);
     }
 
+    @VisibleForTesting
+    public long getEventIdFromInputData(Data data) {
+        return data.getLong(KEY_EVENT_ID, -1);
+    }
+
     @VisibleForTesting
     public long getRetryIntervalFromInputData(Data data) {
         return data.getLong(KEY_EVENT_RETRY_INTERVAL, -1);
@@ -0,0 +1,47 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.event_handler;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Chooses which stored events are dropped when the event queue is over its row or byte limit.
+ *
+ * @see DefaultEventHandler#setEvictionPolicy(EvictionPolicy)
+ */
+public enum EvictionPolicy {
+    /**
+     * Drop the oldest events first.
+     */
+    DROP_OLDEST(EventTable._ID + " ASC"),
+    /**
+     * Drop the newest events first, keeping the events queued earliest.
+     */
+    DROP_NEWEST(EventTable._ID + " DESC"),
+    /**
+     * Drop events of the lowest priority lane first: impressions, then events of unknown type, then conversions
+     * (oldest first in each lane).
+     */
+    DROP_BY_TYPE(EventType.prioritySql() + " DESC, " + EventTable._ID + " ASC");
+
+    // SQL sort order of the events to drop first
+    @NonNull final String evictionOrder;
+
+    EvictionPolicy(@NonNull String evictionOrder) {
+        this.evictionOrder = evictionOrder;
+    }
+}
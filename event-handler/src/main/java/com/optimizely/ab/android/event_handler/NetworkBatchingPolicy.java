@@ -0,0 +1,111 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.event_handler;
+
+import androidx.annotation.NonNull;
+
+import com.optimizely.ab.android.shared.NetworkState;
+import com.optimizely.ab.android.shared.NetworkStateProvider;
+import com.optimizely.ab.android.shared.OptlyStorage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Picks the batch size, flush delay and compression of stored event drains from the current network.
+ * <p>
+ * Unmetered networks get large batches flushed every few seconds with cheap compression, fast metered networks
+ * get small batches flushed quickly with strong compression, and roaming, slow metered or unvalidated networks
+ * defer the flush.  A deferred flush is delayed, not held, so events still leave the device within
+ * {@link #DEFERRED}'s flush delay.
+ * <p>
+ * The policy is enabled in {@link OptlyStorage} by {@link DefaultEventHandler} and read back by
+ * {@link EventDispatcher}, since drains run from a worker that may run after an app restart.
+ */
+class NetworkBatchingPolicy {
+
+    // OptlyStorage key, 1 when the policy is enabled
+    static final String KEY_ENABLED = "EVENT_NETWORK_BATCHING_ENABLED";
+
+    // the min downstream bandwidth of a metered network that is not deferred
+    static final int FAST_DOWNSTREAM_KBPS = 1000;
+
+    static final Settings UNMETERED = new Settings(512 * 1024, TimeUnit.SECONDS.toMillis(10),
+            4 * 1024, Deflater.BEST_SPEED);
+    static final Settings FAST_METERED = new Settings(32 * 1024, TimeUnit.SECONDS.toMillis(1),
+            1024, Deflater.BEST_COMPRESSION);
+    static final Settings DEFERRED = new Settings(32 * 1024, TimeUnit.MINUTES.toMillis(15),
+            1024, Deflater.BEST_COMPRESSION);
+
+    @NonNull private final NetworkStateProvider networkStateProvider;
+
+    NetworkBatchingPolicy(@NonNull NetworkStateProvider networkStateProvider) {
+        this.networkStateProvider = networkStateProvider;
+    }
+
+    static boolean isEnabled(@NonNull OptlyStorage storage) {
+        return storage.getLong(KEY_ENABLED, 0) == 1;
+    }
+
+    /**
+     * @return the settings for the current network
+     */
+    @NonNull
+    Settings current() {
+        return select(networkStateProvider.getNetworkState());
+    }
+
+    @NonNull
+    static Settings select(@NonNull NetworkState state) {
+        if (!state.isConnected() || !state.validated || state.roaming) {
+            return DEFERRED;
+        }
+        if (!state.metered) {
+            return UNMETERED;
+        }
+        // 0 is an unknown bandwidth, which is not taken as a slow network
+        if (state.downstreamKbps == 0 || state.downstreamKbps >= FAST_DOWNSTREAM_KBPS) {
+            return FAST_METERED;
+        }
+        return DEFERRED;
+    }
+
+    /**
+     * How stored events are flushed on a network.
+     */
+    static class Settings {
+        // the max size of a merged request body
+        final long maxBatchBytes;
+        // the delay before a drain scheduled for a new event runs
+        final long flushDelayMillis;
+        // the min request body size for gzip content encoding
+        final int gzipThreshold;
+        // the gzip compression level, from Deflater.BEST_SPEED to Deflater.BEST_COMPRESSION
+        final int gzipLevel;
+
+        Settings(long maxBatchBytes, long flushDelayMillis, int gzipThreshold, int gzipLevel) {
+            this.maxBatchBytes = maxBatchBytes;
+            this.flushDelayMillis = flushDelayMillis;
+            this.gzipThreshold = gzipThreshold;
+            this.gzipLevel = gzipLevel;
+        }
+
+        boolean isDeferred() {
+            return this == DEFERRED;
+        }
+    }
+}
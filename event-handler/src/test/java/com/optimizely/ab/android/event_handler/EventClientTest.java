@@ -17,6 +17,7 @@
 package com.optimizely.ab.android.event_handler;
 
 import com.optimizely.ab.android.shared.Client;
+import com.optimizely.ab.android.shared.RetryPolicy;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -24,7 +25,9 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.exceptions.base.MockitoException;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
 
 import java.io.IOException;
@@ -32,12 +35,18 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.zip.Deflater;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -160,10 +169,117 @@ public class EventClientTest {
         verify(logger).info("Dispatching event: {}", event);
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void requestIsNotRetryableAfterResponseClientRejects() throws IOException {
+        when(client.openConnection(event.getURL())).thenReturn(urlConnection);
+        when(urlConnection.getResponseCode()).thenReturn(500, 400);
+        when(client.releaseConnection(urlConnection, true)).thenReturn(true, false);
+
+        eventClient.sendEvent(event);
+        ArgumentCaptor<Client.Request> captor = ArgumentCaptor.forClass(Client.Request.class);
+        verify(client).execute(captor.capture(), eq(2), eq(5));
+        Client.Request<Boolean> request = captor.getValue();
+
+        assertEquals(Boolean.FALSE, request.execute());
+        assertFalse(request.isNotRetryable(Boolean.FALSE));
+        assertEquals(Boolean.FALSE, request.execute());
+        assertTrue(request.isNotRetryable(Boolean.FALSE));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void requestIsNotRetryableWhenCircuitIsOpen() {
+        when(client.openConnection(event.getURL())).thenReturn(null);
+        when(client.isCircuitOpen(event.getURL())).thenReturn(true);
+
+        eventClient.sendEvent(event);
+        ArgumentCaptor<Client.Request> captor = ArgumentCaptor.forClass(Client.Request.class);
+        verify(client).execute(captor.capture(), eq(2), eq(5));
+        Client.Request<Boolean> request = captor.getValue();
+
+        assertEquals(Boolean.FALSE, request.execute());
+        assertTrue(request.isNotRetryable(Boolean.FALSE));
+    }
+
     @Test
     public void convertsNullResponseToFalse() {
         Event event = mock(Event.class);
         when(client.execute(any(Client.Request.class), eq(2), eq(5))).thenReturn(null);
         assertFalse(eventClient.sendEvent(event));
     }
+
+    @Test
+    public void rejectedEvent() throws IOException {
+        when(client.openConnection(event.getURL())).thenReturn(urlConnection);
+        when(urlConnection.getResponseCode()).thenReturn(400);
+        executeRequests();
+
+        assertEquals(EventClient.SendResult.REJECTED, eventClient.send(event));
+    }
+
+    @Test
+    public void refusedEvent() throws IOException {
+        when(client.openConnection(event.getURL())).thenReturn(urlConnection);
+        when(urlConnection.getResponseCode()).thenReturn(404);
+        executeRequests();
+
+        assertEquals(EventClient.SendResult.REFUSED, eventClient.send(event));
+    }
+
+    @Test
+    public void overloadedEndpointIsNotRejected() throws IOException {
+        when(client.openConnection(event.getURL())).thenReturn(urlConnection);
+        when(urlConnection.getResponseCode()).thenReturn(503);
+        executeRequests();
+
+        assertEquals(EventClient.SendResult.FAILED, eventClient.send(event));
+    }
+
+    @Test
+    public void sendUsesGivenCompression() throws IOException {
+        when(client.openConnection(event.getURL())).thenReturn(urlConnection);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        executeRequests();
+
+        assertEquals(EventClient.SendResult.SENT, eventClient.send(event, new EventClient.Compression(0, Deflater.BEST_SPEED)));
+        // the compression is not kept for the next requests
+        assertEquals(EventClient.SendResult.SENT, eventClient.send(event));
+
+        verify(urlConnection, times(1)).setRequestProperty("Content-Encoding", "gzip");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void sendAsync() throws IOException {
+        when(client.openConnection(event.getURL())).thenReturn(urlConnection);
+        when(urlConnection.getResponseCode()).thenReturn(200, 400);
+        when(client.executeAsync(any(Client.Request.class), any(RetryPolicy.class), isNull())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                final Client.Request<Object> request = invocation.getArgument(0);
+                FutureTask<Object> future = new FutureTask<>(new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        return request.execute();
+                    }
+                });
+                future.run();
+                return future;
+            }
+        });
+
+        assertEquals(EventClient.SendResult.SENT, eventClient.sendAsync(event).await());
+        assertEquals(EventClient.SendResult.REJECTED, eventClient.sendAsync(event).await());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executeRequests() {
+        when(client.execute(any(Client.Request.class), eq(2), eq(5))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((Client.Request<Object>) invocation.getArgument(0)).execute();
+            }
+        });
+    }
 }
@@ -0,0 +1,103 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.event_handler;
+
+import androidx.annotation.NonNull;
+
+import com.optimizely.ab.android.shared.NetworkState;
+import com.optimizely.ab.android.shared.NetworkStateProvider;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link NetworkBatchingPolicy}
+ */
+public class NetworkBatchingPolicyTest {
+
+    private static final NetworkState WIFI = new NetworkState(NetworkState.Transport.WIFI, true, false, false, 50000);
+    private static final NetworkState FAST_CELLULAR = new NetworkState(NetworkState.Transport.CELLULAR, true, true, false, 20000);
+    private static final NetworkState SLOW_CELLULAR = new NetworkState(NetworkState.Transport.CELLULAR, true, true, false, 200);
+    private static final NetworkState ROAMING = new NetworkState(NetworkState.Transport.CELLULAR, true, true, true, 20000);
+
+    /**
+     * A provider with a state set by the test.
+     */
+    private static class FakeNetworkStateProvider implements NetworkStateProvider {
+        NetworkState state = NetworkState.DISCONNECTED;
+
+        @NonNull
+        @Override
+        public NetworkState getNetworkState() {
+            return state;
+        }
+    }
+
+    @Test
+    public void unmeteredNetworkUsesLargeBatches() {
+        assertSame(NetworkBatchingPolicy.UNMETERED, NetworkBatchingPolicy.select(WIFI));
+        assertSame(NetworkBatchingPolicy.UNMETERED, NetworkBatchingPolicy.select(
+                new NetworkState(NetworkState.Transport.ETHERNET, true, false, false, 0)));
+    }
+
+    @Test
+    public void fastMeteredNetworkUsesSmallFrequentBatches() {
+        NetworkBatchingPolicy.Settings settings = NetworkBatchingPolicy.select(FAST_CELLULAR);
+
+        assertSame(NetworkBatchingPolicy.FAST_METERED, settings);
+        assertTrue(settings.maxBatchBytes < NetworkBatchingPolicy.UNMETERED.maxBatchBytes);
+        assertTrue(settings.flushDelayMillis < NetworkBatchingPolicy.UNMETERED.flushDelayMillis);
+        assertTrue(settings.gzipLevel > NetworkBatchingPolicy.UNMETERED.gzipLevel);
+        assertFalse(settings.isDeferred());
+    }
+
+    @Test
+    public void unknownBandwidthIsNotDeferred() {
+        assertSame(NetworkBatchingPolicy.FAST_METERED, NetworkBatchingPolicy.select(
+                new NetworkState(NetworkState.Transport.CELLULAR, true, true, false, 0)));
+    }
+
+    @Test
+    public void roamingSlowOrUnvalidatedNetworkIsDeferred() {
+        assertTrue(NetworkBatchingPolicy.select(ROAMING).isDeferred());
+        assertTrue(NetworkBatchingPolicy.select(SLOW_CELLULAR).isDeferred());
+        assertTrue(NetworkBatchingPolicy.select(NetworkState.DISCONNECTED).isDeferred());
+        assertTrue(NetworkBatchingPolicy.select(
+                new NetworkState(NetworkState.Transport.WIFI, false, false, false, 50000)).isDeferred());
+    }
+
+    @Test
+    public void deferralIsBounded() {
+        assertEquals(15 * 60 * 1000L, NetworkBatchingPolicy.DEFERRED.flushDelayMillis);
+    }
+
+    @Test
+    public void currentFollowsTheProvider() {
+        FakeNetworkStateProvider provider = new FakeNetworkStateProvider();
+        NetworkBatchingPolicy policy = new NetworkBatchingPolicy(provider);
+
+        assertTrue(policy.current().isDeferred());
+        provider.state = WIFI;
+        assertSame(NetworkBatchingPolicy.UNMETERED, policy.current());
+        provider.state = FAST_CELLULAR;
+        assertSame(NetworkBatchingPolicy.FAST_METERED, policy.current());
+    }
+}
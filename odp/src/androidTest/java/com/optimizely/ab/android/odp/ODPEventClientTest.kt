@@ -65,7 +65,7 @@ class ODPEventClientTest {
         verify(urlConnection).connectTimeout = 10 * 1000
         verify(urlConnection).readTimeout = 60 * 1000
         verify(urlConnection).setRequestProperty("x-api-key", apiKey)
-        verify(urlConnection).disconnect()
+        verify(client).releaseConnection(urlConnection, true)
     }
 
     @Test
@@ -80,7 +80,7 @@ class ODPEventClientTest {
 
         assertFalse(received)
         verify(logger).error("ODP event send failed (Response code: 400, message)")
-        verify(urlConnection).disconnect()
+        verify(client).releaseConnection(urlConnection, true)
     }
 
     @Test
@@ -95,7 +95,7 @@ class ODPEventClientTest {
 
         assertFalse(received)
         verify(logger).error("ODP event send failed (Response code: 500, message)")
-        verify(urlConnection).disconnect()
+        verify(client).releaseConnection(urlConnection, true)
     }
 
     @Test
@@ -65,7 +65,7 @@ class ODPSegmentClientTest {
         verify(urlConnection).connectTimeout = 10 * 1000
         verify(urlConnection).readTimeout = 60 * 1000
         verify(urlConnection).setRequestProperty("x-api-key", apiKey)
-        verify(urlConnection).disconnect()
+        verify(client).releaseConnection(urlConnection, true)
     }
 
     @Test
@@ -79,7 +79,7 @@ class ODPSegmentClientTest {
 
         assertNull(received)
         verify(logger).error("Unexpected response from ODP segment endpoint, status: 400")
-        verify(urlConnection).disconnect()
+        verify(client).releaseConnection(urlConnection, true)
     }
 
     @Test
@@ -93,7 +93,7 @@ class ODPSegmentClientTest {
 
         assertNull(received)
         verify(logger).error("Unexpected response from ODP segment endpoint, status: 500")
-        verify(urlConnection).disconnect()
+        verify(client).releaseConnection(urlConnection, true)
     }
 
     @Test
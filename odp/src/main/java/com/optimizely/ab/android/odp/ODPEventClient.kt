@@ -16,6 +16,7 @@ package com.optimizely.ab.android.odp
 
 import androidx.annotation.VisibleForTesting
 import com.optimizely.ab.android.shared.Client
+import com.optimizely.ab.android.shared.RequestBodyWriter
 import org.slf4j.Logger
 import java.net.HttpURLConnection
 import java.net.URL
@@ -29,54 +30,58 @@ open class ODPEventClient(private val client: Client, private val logger: Logger
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     open fun dispatch(apiKey: String, apiEndpoint: String, body: String): Boolean? {
 
-        val request: Client.Request<Boolean> = Client.Request {
-            var urlConnection: HttpURLConnection? = null
-            try {
-                val url = URL(apiEndpoint)
-                urlConnection = client.openConnection(url)
-                if (urlConnection == null) {
-                    logger.error("ODP event connection failed")
-                    return@Request false
-                }
+        val request = object : Client.Request<Boolean> {
+            // set when the last attempt should not be retried
+            @Volatile var notRetryable = false
+
+            override fun isNotRetryable(response: Boolean?): Boolean = notRetryable
+
+            override fun execute(): Boolean {
+                var urlConnection: HttpURLConnection? = null
+                var responseReceived = false
+                notRetryable = false
+                try {
+                    val url = URL(apiEndpoint)
+                    urlConnection = client.openConnection(url)
+                    if (urlConnection == null) {
+                        notRetryable = client.isCircuitOpen(url)
+                        logger.error("ODP event connection failed")
+                        return false
+                    }
+
+                    // set timeouts for releasing failed connections (default is 0 = no timeout).
+                    urlConnection.connectTimeout = CONNECTION_TIMEOUT
+                    urlConnection.readTimeout = READ_TIMEOUT
 
-                // set timeouts for releasing failed connections (default is 0 = no timeout).
-                urlConnection.connectTimeout = CONNECTION_TIMEOUT
-                urlConnection.readTimeout = READ_TIMEOUT
-
-                urlConnection.requestMethod = "POST"
-                urlConnection.setRequestProperty("x-api-key", apiKey)
-                urlConnection.setRequestProperty("content-type", "application/json")
-
-                urlConnection.doOutput = true
-                val outputStream = urlConnection.outputStream
-                outputStream.write(body.toByteArray())
-                outputStream.flush()
-                outputStream.close()
-                val status = urlConnection.responseCode
-                val message = urlConnection.responseMessage
-
-                if (status in 200..399) {
-                    logger.debug("ODP Event Dispatched successfully")
-                    return@Request true
-                } else {
-                    logger.error(
-                        String.format(
-                            "ODP event send failed (Response code: %d, %s)",
-                            status,
-                            message
+                    urlConnection.requestMethod = "POST"
+                    urlConnection.setRequestProperty("x-api-key", apiKey)
+                    urlConnection.setRequestProperty("content-type", "application/json")
+
+                    urlConnection.doOutput = true
+                    RequestBodyWriter.write(urlConnection, body, GZIP_THRESHOLD)
+                    val status = urlConnection.responseCode
+                    responseReceived = true
+                    val message = urlConnection.responseMessage
+
+                    if (status in 200..299) {
+                        logger.debug("ODP Event Dispatched successfully")
+                        return true
+                    } else {
+                        logger.error(
+                            String.format(
+                                "ODP event send failed (Response code: %d, %s)",
+                                status,
+                                message
+                            )
                         )
-                    )
-                    return@Request false
-                }
-            } catch (e: Exception) {
-                logger.error("Error making ODP event request", e)
-                return@Request false
-            } finally {
-                if (urlConnection != null) {
-                    try {
-                        urlConnection.disconnect()
-                    } catch (e: Exception) {
-                        logger.error("Error closing connection", e)
+                        return false
+                    }
+                } catch (e: Exception) {
+                    logger.error("Error making ODP event request", e)
+                    return false
+                } finally {
+                    if (!client.releaseConnection(urlConnection, responseReceived)) {
+                        notRetryable = true
                     }
                 }
             }
@@ -89,6 +94,8 @@ open class ODPEventClient(private val client: Client, private val logger: Logger
         // configurable connection timeout
         var CONNECTION_TIMEOUT = 10 * 1000
         var READ_TIMEOUT = 60 * 1000
+        // min request body size in bytes for gzip content encoding (disabled by default)
+        var GZIP_THRESHOLD = RequestBodyWriter.GZIP_DISABLED
 
         // OdpEventManager (java-sdk core) is supposed to handle retries on failures.
         // android-sdk returns success immediately for sendOdpEvent() from OdpEventManager and schedules it via WorkManager.
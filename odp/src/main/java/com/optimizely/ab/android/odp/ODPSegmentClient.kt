@@ -34,6 +34,7 @@ open class ODPSegmentClient(private val client: Client, private val logger: Logg
 
         val request: Client.Request<String> = Client.Request {
             var urlConnection: HttpURLConnection? = null
+            var responseReceived = false
             try {
                 val url = URL(apiEndpoint)
                 urlConnection = client.openConnection(url)
@@ -55,6 +56,7 @@ open class ODPSegmentClient(private val client: Client, private val logger: Logg
                 outputStream.flush()
                 outputStream.close()
                 val status = urlConnection.responseCode
+                responseReceived = true
                 if (status in 200..399) {
                     val json = client.readStream(urlConnection)
                     logger.debug("Successfully fetched ODP segments: {}", json)
@@ -68,13 +70,7 @@ open class ODPSegmentClient(private val client: Client, private val logger: Logg
                 logger.error("Error making ODP segment request", e)
                 return@Request null
             } finally {
-                if (urlConnection != null) {
-                    try {
-                        urlConnection.disconnect()
-                    } catch (e: Exception) {
-                        logger.error("Error closing connection", e)
-                    }
-                }
+                client.releaseConnection(urlConnection, responseReceived)
             }
         }
         val response = client.execute(request, REQUEST_BACKOFF_TIMEOUT, REQUEST_RETRIES_POWER)
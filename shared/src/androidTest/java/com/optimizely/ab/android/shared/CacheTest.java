@@ -23,9 +23,11 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -34,6 +36,10 @@ import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -89,11 +95,55 @@ public class CacheTest {
         Context context = mock(Context.class);
         Cache cache = new Cache(context, logger);
         FileOutputStream fileOutputStream = mock(FileOutputStream.class);
+        File filesDir = InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir();
+        when(context.getFilesDir()).thenReturn(filesDir);
 
         String data = "{}";
-        Mockito.doThrow(new IOException()).when(fileOutputStream).write(data.getBytes());
-        when(context.openFileOutput(FILENAME, Context.MODE_PRIVATE)).thenReturn(fileOutputStream);
+        Mockito.doThrow(new IOException()).when(fileOutputStream).write(any(byte[].class), anyInt(), anyInt());
+        when(context.openFileOutput(endsWith(".tmp"), eq(Context.MODE_PRIVATE))).thenReturn(fileOutputStream);
         assertFalse(cache.save(FILENAME, data));
         verify(logger).error("Error saving file {}.", FILENAME);
+        ArgumentCaptor<String> tempFilename = ArgumentCaptor.forClass(String.class);
+        verify(context).deleteFile(tempFilename.capture());
+        assertTrue(tempFilename.getValue().startsWith(FILENAME));
+        assertTrue(tempFilename.getValue().endsWith(".tmp"));
+        new File(filesDir, tempFilename.getValue()).delete();
+    }
+
+    @Test
+    public void testSaveReplacesWithoutTempFiles() {
+        assertTrue(cache.save(FILENAME, "bar"));
+        assertTrue(cache.save(FILENAME, "baz", true));
+        assertEquals("baz", cache.load(FILENAME, true));
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        for (String name : context.getFilesDir().list()) {
+            assertFalse(name, name.startsWith(FILENAME) && name.endsWith(".tmp"));
+        }
+        assertTrue(cache.delete(FILENAME));
+        assertFalse(cache.exists(FILENAME + ".crc"));
+    }
+
+    @Test
+    public void testLoadChecksumMismatchReturnsNull() throws IOException {
+        assertTrue(cache.save(FILENAME, "{\"revision\":\"1\"}", true));
+
+        // damage the file behind the cache's back
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FileOutputStream fileOutputStream = context.openFileOutput(FILENAME, Context.MODE_PRIVATE);
+        fileOutputStream.write("{\"revision\":\"2\"}".getBytes());
+        fileOutputStream.close();
+
+        assertNull(cache.load(FILENAME, true));
+        verify(logger).warn("File {} does not match its checksum.", FILENAME);
+        // still loads without verifying
+        assertEquals("{\"revision\":\"2\"}", cache.load(FILENAME));
+        assertTrue(cache.delete(FILENAME));
+    }
+
+    @Test
+    public void testLoadWithoutChecksumFile() {
+        assertTrue(cache.save(FILENAME, "bar"));
+        assertEquals("bar", cache.load(FILENAME, true));
+        assertTrue(cache.delete(FILENAME));
     }
 }
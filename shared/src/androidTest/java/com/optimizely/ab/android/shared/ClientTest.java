@@ -25,17 +25,22 @@ import org.mockito.ArgumentCaptor;
 import org.slf4j.Logger;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -111,6 +116,48 @@ public class ClientTest {
         verify(optlyStorage).saveLong(url.toString(), 100L);
     }
 
+    @Test
+    public void setIfModifiedSinceSendsETag() throws MalformedURLException {
+        URL url = new URL("http://www.optimizely.com");
+        when(optlyStorage.getString(Client.getETagKey(url.toString()), null)).thenReturn("\"abc\"");
+        URLConnection urlConnection = mock(URLConnection.class);
+        when(urlConnection.getURL()).thenReturn(url);
+
+        client.setIfModifiedSince(urlConnection);
+        verify(urlConnection).setRequestProperty("If-None-Match", "\"abc\"");
+        verify(urlConnection, never()).setIfModifiedSince(anyLong());
+    }
+
+    @Test
+    public void saveLastModifiedSavesETag() throws MalformedURLException {
+        URL url = new URL("http://www.optimizely.com");
+        URLConnection urlConnection = mock(URLConnection.class);
+        when(urlConnection.getURL()).thenReturn(url);
+        when(urlConnection.getHeaderField("ETag")).thenReturn("\"abc\"");
+
+        client.saveLastModified(urlConnection);
+        verify(optlyStorage).saveString(Client.getETagKey(url.toString()), "\"abc\"");
+    }
+
+    @Test
+    public void saveLastModifiedRemovesOldETag() throws MalformedURLException {
+        URL url = new URL("http://www.optimizely.com");
+        URLConnection urlConnection = mock(URLConnection.class);
+        when(urlConnection.getURL()).thenReturn(url);
+        when(urlConnection.getLastModified()).thenReturn(100L);
+
+        client.saveLastModified(urlConnection);
+        verify(optlyStorage).remove(Client.getETagKey(url.toString()));
+    }
+
+    @Test
+    public void clearLastModified() {
+        String url = "http://www.optimizely.com";
+        Client.clearLastModified(optlyStorage, url);
+        verify(optlyStorage).saveLong(url, 1);
+        verify(optlyStorage).remove(Client.getETagKey(url));
+    }
+
     @Test
     public void readStreamReturnsString() throws IOException {
         String foo = "foo";
@@ -121,6 +168,79 @@ public class ClientTest {
         assertEquals(foo, readFoo);
     }
 
+    @Test
+    public void readStreamDecodesGzip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+        gzip.write("{\"revision\":\"1\"}".getBytes("UTF-8"));
+        gzip.close();
+        URLConnection urlConnection = mock(URLConnection.class);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream(bytes.toByteArray()));
+        when(urlConnection.getContentEncoding()).thenReturn("gzip");
+        when(urlConnection.getContentLength()).thenReturn(bytes.size());
+
+        assertEquals("{\"revision\":\"1\"}", client.readStream(urlConnection));
+    }
+
+    @Test
+    public void openAndReleaseConnectionUseTransport() throws IOException {
+        HttpTransport transport = mock(HttpTransport.class);
+        HttpURLConnection urlConnection = mock(HttpURLConnection.class);
+        URL url = new URL("http://www.optimizely.com");
+        when(transport.open(url)).thenReturn(urlConnection);
+        client = new Client(optlyStorage, logger, transport);
+
+        assertEquals(urlConnection, client.openConnection(url));
+        client.releaseConnection(urlConnection, true);
+        client.releaseConnection(null, true);
+
+        verify(transport).release(urlConnection, true);
+    }
+
+    @Test
+    public void openConnectionReturnsNullOnTransportError() throws IOException {
+        HttpTransport transport = mock(HttpTransport.class);
+        URL url = new URL("http://www.optimizely.com");
+        when(transport.open(url)).thenThrow(new IOException());
+        client = new Client(optlyStorage, logger, transport);
+
+        assertNull(client.openConnection(url));
+        verify(logger).warn("Error making request to {}.", url);
+    }
+
+    @Test
+    public void openConnectionFailsFastWhenCircuitBreakerIsOpen() throws IOException {
+        HttpTransport transport = mock(HttpTransport.class);
+        URL url = new URL("http://www.optimizely.com");
+        when(transport.open(url)).thenThrow(new IOException());
+        client = new Client(optlyStorage, logger, transport, new CircuitBreakerRegistry());
+
+        for (int i = 0; i < CircuitBreakerRegistry.MIN_REQUESTS; i++) {
+            assertNull(client.openConnection(url));
+        }
+        verify(transport, times(CircuitBreakerRegistry.MIN_REQUESTS)).open(url);
+
+        assertNull(client.openConnection(url));
+        verify(transport, times(CircuitBreakerRegistry.MIN_REQUESTS)).open(url);
+        verify(logger).warn("Circuit breaker for {} is open, failing request.", "http://www.optimizely.com");
+    }
+
+    @Test
+    public void releaseConnectionTellsIfRequestIsRetryable() throws IOException {
+        HttpTransport transport = mock(HttpTransport.class);
+        HttpURLConnection urlConnection = mock(HttpURLConnection.class);
+        URL url = new URL("http://www.optimizely.com");
+        when(urlConnection.getURL()).thenReturn(url);
+        when(urlConnection.getResponseCode()).thenReturn(500, 400, 429);
+        client = new Client(optlyStorage, logger, transport, new CircuitBreakerRegistry());
+
+        assertTrue(client.releaseConnection(urlConnection, true));
+        assertFalse(client.releaseConnection(urlConnection, true));
+        assertFalse(client.isCircuitOpen(url));
+        assertFalse(client.releaseConnection(urlConnection, true));
+        assertTrue(client.isCircuitOpen(url));
+    }
+
     @Test
     public void testExpBackoffSuccess() {
         Client.Request request = mock(Client.Request.class);
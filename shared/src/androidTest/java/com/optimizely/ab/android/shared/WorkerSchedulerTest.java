@@ -18,9 +18,12 @@ package com.optimizely.ab.android.shared;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import android.content.Context;
+import android.os.Build;
 import android.util.Log;
 
 import androidx.test.core.app.ApplicationProvider;
@@ -42,6 +45,8 @@ import org.junit.runner.RunWith;
 import java.util.AbstractMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link WorkerScheduler}
@@ -194,4 +199,70 @@ public class WorkerSchedulerTest {
         assertEquals(workInfo.getOutputData(), inputData);
     }
 
+    @Test
+    public void startService_initialDelay() throws Exception {
+        WorkerScheduler.requestOnlyWhenConnected = false;   // do not add Connected constraint
+
+        enqueResult = WorkerScheduler.startService(context, TestWorker.workerId, TestWorker.class, inputData, -1L, 60 * 1000L);
+        WorkRequest workRequest = (WorkRequest) enqueResult.getKey();
+        Operation operation = (Operation) enqueResult.getValue();
+        UUID workId = workRequest.getId();
+
+        operation.getResult().get();
+
+        // work not started because of the initial delay
+        WorkInfo workInfo = workManager.getWorkInfoById(workId).get();
+        assertThat(workInfo.getState(), is(WorkInfo.State.ENQUEUED));
+
+        testDriver.setInitialDelayMet(workId);
+
+        workInfo = workManager.getWorkInfoById(workId).get();
+        assertThat(workInfo.getState(), is(WorkInfo.State.SUCCEEDED));
+    }
+
+    @Test
+    public void startExpeditedService() throws Exception {
+        WorkerScheduler.requestOnlyWhenConnected = false;   // do not add Connected constraint
+
+        enqueResult = WorkerScheduler.startExpeditedService(context, TestWorker.workerId, TestWorker.class, inputData, -1L);
+        WorkRequest workRequest = (WorkRequest) enqueResult.getKey();
+        Operation operation = (Operation) enqueResult.getValue();
+        UUID workId = workRequest.getId();
+
+        operation.getResult().get();
+
+        // expedited only where it does not need a foreground service
+        assertEquals(Build.VERSION.SDK_INT >= Build.VERSION_CODES.S, workRequest.getWorkSpec().expedited);
+        WorkInfo workInfo = workManager.getWorkInfoById(workId).get();
+        assertThat(workInfo.getState(), is(WorkInfo.State.SUCCEEDED));
+        assertEquals(workInfo.getOutputData(), inputData);
+    }
+
+    @Test
+    public void runInProcess() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final String[] threadName = new String[1];
+
+        WorkerScheduler.runInProcess(new Runnable() {
+            @Override
+            public void run() {
+                threadName[0] = Thread.currentThread().getName();
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(threadName[0].startsWith("optly-dispatch"));
+    }
+
+    @Test
+    public void canRunInProcessDisabled() {
+        WorkerScheduler.runInProcessWhenForeground = false;
+        try {
+            assertFalse(WorkerScheduler.canRunInProcess(context));
+        } finally {
+            WorkerScheduler.runInProcessWhenForeground = true;
+        }
+    }
+
 }
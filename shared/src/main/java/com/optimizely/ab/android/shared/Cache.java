@@ -22,22 +22,63 @@ import androidx.annotation.Nullable;
 
 import org.slf4j.Logger;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.InputStreamReader;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
 
 /**
  * Functionality common to all caches.  This is a simple cache class that takes a filename and saves string data
  * to that file.  It can then use that file name to load the data.
- *
+ * <p>
+ * Saves are atomic: the data is written to a temporary file that is synced to disk and renamed over the cache
+ * file, so a crash or kill during a save leaves the previous data in place.  Each save writes its own temporary
+ * file, and saves of the same file in this process rename theirs one at a time.  Caches can also save a CRC32
+ * checksum in a sidecar file and verify it on load, so a damaged file is reported as missing.  Until the data is
+ * renamed, the sidecar lists the checksum of the previous data as well, so the previous data still loads after a
+ * crash between the two renames.
+ * <p>
+ * Files are stored as UTF-8 and loaded unchanged with a single read sized to the file.
  */
 public class Cache {
 
+    // appended to the unique name of a temporary file while it is being written
+    private static final String TEMP_SUFFIX = ".tmp";
+    // appended to the name of a file for its checksum sidecar
+    private static final String CHECKSUM_SUFFIX = ".crc";
+    // the max number of checksums in a sidecar, more than one only after saves killed before the data was renamed
+    private static final int MAX_CHECKSUMS = 4;
+    private static final int COPY_BUFFER_SIZE = 8 * 1024;
+    // locks of the files being saved, so the renames and checksums of concurrent saves do not interleave
+    private static final Map<String, Object> saveLocks = new HashMap<>();
+
     @NonNull private final Context context;
     @NonNull private final Logger logger;
 
+    /**
+     * Checks data before a save replaces the cache file with it.
+     */
+    public interface Validator {
+        /**
+         * @param data the data being saved, read from its temporary file and closed by the cache
+         * @return true if the data can replace the cache file
+         * @throws IOException if the data cannot be read, the data is then invalid
+         */
+        boolean isValid(@NonNull InputStream data) throws IOException;
+    }
+
     /**
      * Create new instance of {@link Cache}.
      *
@@ -50,12 +91,13 @@ public class Cache {
     }
 
     /**
-     * Delete the cache file.
+     * Delete the cache file and its checksum.
      *
      * @param filename the path to the file
      * @return true if the file was deleted or false otherwise
      */
     public boolean delete(String filename) {
+        context.deleteFile(filename + CHECKSUM_SUFFIX);
         return context.deleteFile(filename);
     }
 
@@ -66,8 +108,8 @@ public class Cache {
      * @return true if the file exists or false otherwise
      */
     public boolean exists(String filename) {
-        String[] files = context.fileList();
-        return files != null && Arrays.asList(files).contains(filename);
+        File filesDir = context.getFilesDir();
+        return filesDir != null && new File(filesDir, filename).isFile();
     }
 
     /**
@@ -78,56 +120,332 @@ public class Cache {
      */
     @Nullable
     public String load(String filename) {
-        FileInputStream fileInputStream = null;
-        try {
-            fileInputStream = context.openFileInput(filename);
-            InputStreamReader inputStreamReader = new InputStreamReader(fileInputStream);
-            BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                sb.append(line);
+        return read(filename, null);
+    }
+
+    /**
+     * Load data from the cache file, verifying its checksum.
+     * <p>
+     * Files saved without a checksum, such as files saved by an older version, are loaded without verifying.
+     *
+     * @param filename the path to the file
+     * @param checksum true to verify the checksum saved with the file
+     * @return the loaded cache file as String or null if the file cannot be loaded or does not match its checksum
+     */
+    @Nullable
+    public String load(String filename, boolean checksum) {
+        if (!checksum) {
+            return load(filename);
+        }
+
+        CRC32 crc = new CRC32();
+        String data = read(filename, crc);
+        if (data == null || !exists(filename + CHECKSUM_SUFFIX)) {
+            return data;
+        }
+        if (!loadChecksums(filename).contains(formatChecksum(crc.getValue()))) {
+            logger.warn("File {} does not match its checksum.", filename);
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * Save data to the cache file and overwrite any existing data.
+     *
+     * @param filename the path to the file
+     * @param data     the String data to write to the file
+     * @return true if the file was saved
+     */
+    public boolean save(String filename, String data) {
+        return save(filename, data, false);
+    }
+
+    /**
+     * Save data to the cache file and overwrite any existing data.
+     *
+     * @param filename the path to the file
+     * @param data     the String data to write to the file
+     * @param checksum true to save a checksum, verified by {@link #load(String, boolean)}
+     * @return true if the file was saved
+     */
+    public boolean save(String filename, String data, boolean checksum) {
+        if (data == null) {
+            logger.error("Error saving file {}.", filename);
+            return false;
+        }
+        return save(filename, new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)), checksum);
+    }
+
+    /**
+     * Save a stream to the cache file, replacing any existing data.
+     * <p>
+     * The stream is copied to a temporary file, so the data is never held in memory.
+     *
+     * @param filename the path to the file
+     * @param in       the stream to copy, left open for the caller to close
+     * @return true if the file was saved
+     */
+    public boolean save(String filename, InputStream in) {
+        return save(filename, in, false);
+    }
+
+    /**
+     * Save a stream to the cache file, replacing any existing data.
+     *
+     * @param filename the path to the file
+     * @param in       the stream to copy, left open for the caller to close
+     * @param checksum true to save a checksum, verified by {@link #load(String, boolean)}
+     * @return true if the file was saved
+     */
+    public boolean save(String filename, InputStream in, boolean checksum) {
+        return save(filename, in, checksum, null);
+    }
+
+    /**
+     * Save a stream to the cache file, replacing any existing data only if the saved data is valid.
+     * <p>
+     * The temporary file is streamed back to the validator before it replaces the cache file, so invalid data, such
+     * as an error page or a truncated body, leaves the previous data in place.
+     *
+     * @param filename  the path to the file
+     * @param in        the stream to copy, left open for the caller to close
+     * @param checksum  true to save a checksum, verified by {@link #load(String, boolean)}
+     * @param validator checks the data before it replaces the cache file, or null
+     * @return true if the file was saved, false if it could not be written or is invalid
+     */
+    public boolean save(String filename, InputStream in, boolean checksum, @Nullable Validator validator) {
+        String tempFilename = createTempFile(filename);
+        if (tempFilename == null) {
+            logger.error("Error saving file {}.", filename);
+            return false;
+        }
+
+        CRC32 crc = checksum ? new CRC32() : null;
+        boolean saved = write(tempFilename, in, crc)
+                && (validator == null || validate(filename, tempFilename, validator));
+        if (saved) {
+            synchronized (getSaveLock(filename)) {
+                // the checksum is renamed first, listed with the checksums of the previous data until the data is renamed
+                saved = (crc == null || saveChecksums(filename, pendingChecksums(filename, crc.getValue())))
+                        && rename(tempFilename, filename);
+                if (saved && crc != null) {
+                    // only the new data is valid from now on
+                    saveChecksums(filename, Collections.singletonList(formatChecksum(crc.getValue())));
+                }
+            }
+        }
+        if (!saved) {
+            logger.error("Error saving file {}.", filename);
+            context.deleteFile(tempFilename);
+        }
+        return saved;
+    }
+
+    @NonNull
+    private static Object getSaveLock(String filename) {
+        synchronized (saveLocks) {
+            Object lock = saveLocks.get(filename);
+            if (lock == null) {
+                lock = new Object();
+                saveLocks.put(filename, lock);
             }
-            return sb.toString();
+            return lock;
+        }
+    }
+
+    /**
+     * Create an empty temporary file with a unique name next to a file.
+     *
+     * @param filename the file the temporary file will replace
+     * @return the name of the temporary file, or null if it cannot be created
+     */
+    @Nullable
+    private String createTempFile(String filename) {
+        File filesDir = context.getFilesDir();
+        if (filesDir == null) {
+            return null;
+        }
+        try {
+            return File.createTempFile(filename, TEMP_SUFFIX, filesDir).getName();
         } catch (Exception e) {
-            logger.warn("Unable to load file {}.", filename);
+            logger.warn("Unable to create a temporary file for {}.", filename);
             return null;
+        }
+    }
+
+    /**
+     * @return the checksum of new data followed by the checksums the current data may match
+     */
+    @NonNull
+    private List<String> pendingChecksums(String filename, long value) {
+        List<String> checksums = new ArrayList<>();
+        checksums.add(formatChecksum(value));
+        List<String> previous = loadChecksums(filename);
+        if (previous.isEmpty() && exists(filename)) {
+            // saved without a checksum, such as by an older version
+            CRC32 crc = new CRC32();
+            if (read(filename, crc) != null) {
+                previous.add(formatChecksum(crc.getValue()));
+            }
+        }
+        for (String checksum : previous) {
+            if (checksums.size() < MAX_CHECKSUMS && !checksums.contains(checksum)) {
+                checksums.add(checksum);
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * @return the checksums listed in the sidecar of a file, empty if it has none
+     */
+    @NonNull
+    private List<String> loadChecksums(String filename) {
+        List<String> checksums = new ArrayList<>();
+        String sidecar = exists(filename + CHECKSUM_SUFFIX) ? read(filename + CHECKSUM_SUFFIX, null) : null;
+        if (sidecar != null) {
+            for (String checksum : sidecar.split("\\s+")) {
+                if (!checksum.isEmpty()) {
+                    checksums.add(checksum);
+                }
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * Check the temporary file of a save, streamed to the validator instead of loaded into memory.
+     */
+    private boolean validate(String filename, String tempFilename, @NonNull Validator validator) {
+        boolean valid = false;
+        FileInputStream fileInputStream = null;
+        try {
+            fileInputStream = context.openFileInput(tempFilename);
+            valid = validator.isValid(fileInputStream);
+        } catch (Exception e) {
+            logger.warn("Unable to validate file {}.", filename);
         } finally {
-            try {
-                if (fileInputStream != null) {
+            if (fileInputStream != null) {
+                try {
                     fileInputStream.close();
+                } catch (Exception e) {
+                    logger.warn("Unable to close file {}.", tempFilename, e);
                 }
-            } catch (Exception e) {
-                logger.warn("Unable to close file {}.", filename, e);
             }
         }
+        if (!valid) {
+            logger.warn("File {} is not valid, keeping the previous data.", filename);
+        }
+        return valid;
+    }
+
+    private boolean saveChecksums(String filename, @NonNull List<String> checksums) {
+        String checksumFilename = filename + CHECKSUM_SUFFIX;
+        StringBuilder lines = new StringBuilder();
+        for (String checksum : checksums) {
+            lines.append(checksum).append('\n');
+        }
+        byte[] data = lines.toString().getBytes(StandardCharsets.UTF_8);
+        String tempFilename = createTempFile(checksumFilename);
+        if (tempFilename == null) {
+            return false;
+        }
+        if (write(tempFilename, new ByteArrayInputStream(data), null) && rename(tempFilename, checksumFilename)) {
+            return true;
+        }
+        context.deleteFile(tempFilename);
+        return false;
     }
 
     /**
-     * Save data to the cache file and overwrite any existing data.
+     * Copy a stream to a file and sync it to disk.
      *
-     * @param filename the path to the file
-     * @param data     the String data to write to the file
-     * @return true if the file was saved
+     * @param filename the file to write
+     * @param in       the stream to copy
+     * @param checksum updated with the bytes written, or null
+     * @return true if the file was written, false if it is incomplete
      */
-    public boolean save(String filename, String data) {
+    private boolean write(String filename, InputStream in, @Nullable Checksum checksum) {
         FileOutputStream fileOutputStream = null;
         try {
             fileOutputStream = context.openFileOutput(filename, Context.MODE_PRIVATE);
-            fileOutputStream.write(data.getBytes());
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                fileOutputStream.write(buffer, 0, read);
+                if (checksum != null) {
+                    checksum.update(buffer, 0, read);
+                }
+            }
+            // the data must be on disk before the rename makes it the cache file
+            fileOutputStream.getFD().sync();
             return true;
         } catch (Exception e) {
-            logger.error("Error saving file {}.", filename);
-            return false;
+            logger.warn("Unable to write file {}.", filename);
         } finally {
             if (fileOutputStream != null) {
                 try {
                     fileOutputStream.close();
                 } catch (Exception e) {
                     logger.warn("Unable to close file {}.", filename, e);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rename a temporary file over a file, replacing it in a single step.
+     */
+    private boolean rename(String tempFilename, String filename) {
+        File filesDir = context.getFilesDir();
+        return filesDir != null && new File(filesDir, tempFilename).renameTo(new File(filesDir, filename));
+    }
+
+    /**
+     * Read a file with a single read sized to the file.
+     *
+     * @param filename the file to read
+     * @param checksum updated with the bytes read, or null
+     * @return the file decoded as UTF-8, or null if it cannot be read
+     */
+    @Nullable
+    private String read(String filename, @Nullable Checksum checksum) {
+        FileInputStream fileInputStream = null;
+        try {
+            fileInputStream = context.openFileInput(filename);
+            FileChannel channel = fileInputStream.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // read until the buffer is full, or the file was truncated since its size was read
+            }
 
+            if (checksum != null) {
+                checksum.update(buffer.array(), 0, buffer.position());
+            }
+            return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            logger.warn("Unable to load file {}.", filename);
+            return null;
+        } finally {
+            try {
+                if (fileInputStream != null) {
+                    fileInputStream.close();
                 }
+            } catch (Exception e) {
+                logger.warn("Unable to close file {}.", filename, e);
             }
         }
     }
+
+    @NonNull
+    private static String formatChecksum(long value) {
+        return Long.toHexString(value);
+    }
 }
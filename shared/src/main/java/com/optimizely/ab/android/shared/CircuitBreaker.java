@@ -0,0 +1,231 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Stops requests to a failing endpoint.
+ * <p>
+ * The breaker is closed while the failure rate of the last {@code windowSize} requests stays under the
+ * threshold.  Once it is reached the breaker opens and requests fail immediately.  After the cooldown a
+ * single trial request is let through (half-open): the breaker closes if it succeeds and opens again if
+ * it fails.
+ * <p>
+ * An overloaded endpoint (429 or 503) {@link #pause(long) pauses} the breaker: it opens until the
+ * Retry-After time, whatever the failure rate.
+ *
+ * @see CircuitBreakerRegistry
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Notified when a breaker changes state.
+     */
+    public interface Listener {
+        void onStateChanged(@NonNull String endpoint, @NonNull State from, @NonNull State to);
+    }
+
+    @NonNull private final String endpoint;
+    private final int minRequests;
+    private final int failureRateThreshold;
+    private final long cooldownMillis;
+    @Nullable private final Listener listener;
+
+    // ring buffer of the outcomes of the last requests, true for failures
+    @NonNull private final boolean[] window;
+    private int windowCount;
+    private int windowNext;
+    private int windowFailures;
+
+    @NonNull private State state = State.CLOSED;
+    private long openUntil;
+    private boolean trialInFlight;
+    private long rejectedCount;
+
+    /**
+     * @param endpoint             the endpoint name, for logs and metrics
+     * @param windowSize           the number of recent requests the failure rate is computed over
+     * @param minRequests          the min number of requests in the window before the breaker can open
+     * @param failureRateThreshold the failure rate (percent) that opens the breaker, over 100 to never open on failures
+     * @param cooldownMillis       how long the breaker stays open before a trial request
+     * @param listener             notified on state changes, or null
+     */
+    CircuitBreaker(@NonNull String endpoint, int windowSize, int minRequests, int failureRateThreshold,
+                   long cooldownMillis, @Nullable Listener listener) {
+        this.endpoint = endpoint;
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minRequests = Math.max(1, Math.min(minRequests, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.cooldownMillis = cooldownMillis;
+        this.listener = listener;
+    }
+
+    /**
+     * @return true if a request may be made, false if it should fail immediately
+     */
+    public boolean allowRequest() {
+        Transition transition = null;
+        boolean allowed;
+        synchronized (this) {
+            if (state == State.OPEN && now() >= openUntil) {
+                transition = moveTo(State.HALF_OPEN);
+            }
+            if (state == State.CLOSED) {
+                allowed = true;
+            } else if (state == State.HALF_OPEN && !trialInFlight) {
+                trialInFlight = true;
+                allowed = true;
+            } else {
+                rejectedCount++;
+                allowed = false;
+            }
+        }
+        notify(transition);
+        return allowed;
+    }
+
+    /**
+     * Record the outcome of a request let through by {@link #allowRequest()}.
+     *
+     * @param success false if the request failed because of the endpoint (network errors, 5xx)
+     */
+    public void recordResult(boolean success) {
+        Transition transition = null;
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                trialInFlight = false;
+                transition = moveTo(success ? State.CLOSED : State.OPEN);
+            } else if (state == State.CLOSED) {
+                record(!success);
+                if (windowCount >= minRequests && windowFailures * 100 >= failureRateThreshold * windowCount) {
+                    transition = moveTo(State.OPEN);
+                }
+            }
+            // results of requests started before the breaker opened are ignored
+        }
+        notify(transition);
+    }
+
+    /**
+     * Open the breaker for at least the given time, when the endpoint asks clients to back off.
+     *
+     * @param durationMillis how long to stop sending requests
+     */
+    public void pause(long durationMillis) {
+        Transition transition;
+        synchronized (this) {
+            long until = now() + durationMillis;
+            trialInFlight = false;
+            if (state == State.OPEN) {
+                openUntil = Math.max(openUntil, until);
+                return;
+            }
+            transition = moveTo(State.OPEN);
+            openUntil = until;
+        }
+        notify(transition);
+    }
+
+    /**
+     * @return the time in milliseconds until the open breaker lets a trial request through, 0 if not open
+     */
+    public synchronized long getRemainingOpenMillis() {
+        return state == State.OPEN ? Math.max(0, openUntil - now()) : 0;
+    }
+
+    @NonNull
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    @NonNull
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the failure rate (percent) of the requests in the window
+     */
+    public synchronized int getFailureRate() {
+        return windowCount == 0 ? 0 : windowFailures * 100 / windowCount;
+    }
+
+    /**
+     * @return the number of requests failed immediately because the breaker was open
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowNext]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowNext] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowNext = (windowNext + 1) % window.length;
+    }
+
+    // called while holding the lock
+    @Nullable
+    private Transition moveTo(@NonNull State to) {
+        State from = state;
+        state = to;
+        if (to == State.OPEN) {
+            openUntil = now() + cooldownMillis;
+        } else if (to == State.CLOSED) {
+            windowCount = 0;
+            windowNext = 0;
+            windowFailures = 0;
+        }
+        return from == to ? null : new Transition(from, to);
+    }
+
+    private void notify(@Nullable Transition transition) {
+        if (transition != null && listener != null) {
+            listener.onStateChanged(endpoint, transition.from, transition.to);
+        }
+    }
+
+    private static class Transition {
+        @NonNull final State from;
+        @NonNull final State to;
+
+        Transition(@NonNull State from, @NonNull State to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
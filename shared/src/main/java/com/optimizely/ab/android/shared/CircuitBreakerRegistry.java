@@ -0,0 +1,105 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@link CircuitBreaker}s of the endpoints used by {@link Client}s, one per host.
+ * <p>
+ * The events, datafile, ODP and CMAB endpoints are all on separate hosts, so a degraded endpoint does not
+ * stop requests to the others.
+ */
+public class CircuitBreakerRegistry {
+
+    // easy way to configure the breakers created after the change
+    // (when disabled, breakers only open for Retry-After pauses)
+    public static boolean ENABLED = true;
+    public static int WINDOW_SIZE = 20;
+    public static int MIN_REQUESTS = 5;
+    public static int FAILURE_RATE_THRESHOLD = 50;
+    public static long COOLDOWN_MILLIS = 30 * 1000;
+
+    // a failure rate threshold that is never reached
+    private static final int NEVER_OPEN = 101;
+
+    @Nullable private static CircuitBreakerRegistry defaultRegistry;
+
+    @NonNull private final Map<String, CircuitBreaker> breakers = new HashMap<>();
+    @Nullable private volatile CircuitBreaker.Listener listener;
+
+    /**
+     * @return the registry shared by all clients that are not given their own
+     */
+    @NonNull
+    public static synchronized CircuitBreakerRegistry getDefault() {
+        if (defaultRegistry == null) {
+            defaultRegistry = new CircuitBreakerRegistry();
+        }
+        return defaultRegistry;
+    }
+
+    /**
+     * @param url a request url
+     * @return the breaker of the url's host
+     */
+    @NonNull
+    public synchronized CircuitBreaker getBreaker(@NonNull URL url) {
+        String endpoint = url.getProtocol() + "://" + url.getAuthority();
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (breaker == null) {
+            int failureRateThreshold = ENABLED ? FAILURE_RATE_THRESHOLD : NEVER_OPEN;
+            breaker = new CircuitBreaker(endpoint, WINDOW_SIZE, MIN_REQUESTS, failureRateThreshold, COOLDOWN_MILLIS,
+                    new CircuitBreaker.Listener() {
+                        @Override
+                        public void onStateChanged(@NonNull String endpoint, @NonNull CircuitBreaker.State from,
+                                                   @NonNull CircuitBreaker.State to) {
+                            CircuitBreaker.Listener listener = CircuitBreakerRegistry.this.listener;
+                            if (listener != null) {
+                                listener.onStateChanged(endpoint, from, to);
+                            }
+                        }
+                    });
+            breakers.put(endpoint, breaker);
+        }
+        return breaker;
+    }
+
+    /**
+     * @return the current state of every endpoint's breaker, for metrics
+     */
+    @NonNull
+    public synchronized Map<String, CircuitBreaker.State> getStates() {
+        Map<String, CircuitBreaker.State> states = new HashMap<>();
+        for (CircuitBreaker breaker : breakers.values()) {
+            states.put(breaker.getEndpoint(), breaker.getState());
+        }
+        return states;
+    }
+
+    /**
+     * @param listener notified when any breaker changes state, or null to remove it
+     */
+    public void setListener(@Nullable CircuitBreaker.Listener listener) {
+        this.listener = listener;
+    }
+}
@@ -16,26 +16,22 @@
 
 package com.optimizely.ab.android.shared;
 
-import android.os.Build;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.slf4j.Logger;
 
 import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
-import java.security.SecureRandom;
-import java.util.Scanner;
-import java.util.concurrent.TimeUnit;
-
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Functionality common to all clients using http connections
@@ -43,48 +39,166 @@ import javax.net.ssl.TrustManager;
 public class Client {
 
     static final int MAX_BACKOFF_TIMEOUT = (int) Math.pow(2, 5);
+    // appended to a url for the OptlyStorage key of its ETag
+    private static final String ETAG_KEY_SUFFIX = "optlyETag";
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
 
     @NonNull private final OptlyStorage optlyStorage;
     @NonNull private final Logger logger;
+    @NonNull private final HttpTransport transport;
+    @NonNull private final CircuitBreakerRegistry circuitBreakers;
 
     /**
-     * Constructs a new Client instance
+     * Constructs a new Client instance using the {@link PooledHttpTransport#getDefault() default transport}
      *
      * @param optlyStorage an instance of {@link OptlyStorage}
      * @param logger       an instance of {@link Logger}
      */
     public Client(@NonNull OptlyStorage optlyStorage, @NonNull Logger logger) {
+        this(optlyStorage, logger, PooledHttpTransport.getDefault());
+    }
+
+    /**
+     * Constructs a new Client instance
+     *
+     * @param optlyStorage an instance of {@link OptlyStorage}
+     * @param logger       an instance of {@link Logger}
+     * @param transport    the {@link HttpTransport} that opens and releases connections
+     */
+    public Client(@NonNull OptlyStorage optlyStorage, @NonNull Logger logger, @NonNull HttpTransport transport) {
+        this(optlyStorage, logger, transport, CircuitBreakerRegistry.getDefault());
+    }
+
+    /**
+     * Constructs a new Client instance
+     *
+     * @param optlyStorage    an instance of {@link OptlyStorage}
+     * @param logger          an instance of {@link Logger}
+     * @param transport       the {@link HttpTransport} that opens and releases connections
+     * @param circuitBreakers the {@link CircuitBreaker}s of the endpoints
+     */
+    public Client(@NonNull OptlyStorage optlyStorage, @NonNull Logger logger, @NonNull HttpTransport transport,
+                  @NonNull CircuitBreakerRegistry circuitBreakers) {
         this.optlyStorage = optlyStorage;
         this.logger = logger;
+        this.transport = transport;
+        this.circuitBreakers = circuitBreakers;
     }
 
     /**
      * Opens {@link HttpURLConnection} from a {@link URL}
+     * <p>
+     * The connection must be handed back to {@link #releaseConnection(HttpURLConnection, boolean)}.
+     * Returns null without making a request while the {@link CircuitBreaker} of the endpoint is open
+     * (see {@link #isCircuitOpen(URL)}).
      *
      * @param url a {@link URL} instance
      * @return an open {@link HttpURLConnection}
      */
     @Nullable
     public HttpURLConnection openConnection(URL url) {
-        try {
-            // API 21 (LOLLIPOP)+ supposed to use TLS1.2 as default, but some API-21 devices still fail, so include it here.
-            if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.LOLLIPOP) {
-                SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
-                sslContext.init(null, null, null);
-                SSLSocketFactory sslSocketFactory = new TLSSocketFactory();
-                HttpsURLConnection.setDefaultSSLSocketFactory(sslSocketFactory);
-            }
+        CircuitBreaker breaker = url != null ? circuitBreakers.getBreaker(url) : null;
+        if (breaker != null && !breaker.allowRequest()) {
+            logger.warn("Circuit breaker for {} is open, failing request.", breaker.getEndpoint());
+            return null;
+        }
 
-            return (HttpURLConnection) url.openConnection();
+        try {
+            return transport.open(url);
         } catch (Exception e) {
             logger.warn("Error making request to {}.", url);
+            if (breaker != null) {
+                breaker.recordResult(false);
+            }
         }
         return null;
     }
 
     /**
-     * Adds a if-modified-since header to the open {@link URLConnection} if this value is
-     * stored in {@link OptlyStorage}.
+     * Releases a {@link HttpURLConnection} opened by {@link #openConnection(URL)}, keeping it alive for
+     * reuse when possible.
+     * <p>
+     * The response status is handled by {@link ResponsePolicy} for all clients: a 429 or 503 pauses all requests
+     * to the endpoint until its Retry-After time, and the request should not be retried after a 4xx
+     * (see {@link Request#isNotRetryable(Object)}).
+     *
+     * @param urlConnection    the connection, ignored when null
+     * @param responseReceived true if the response status was read
+     * @return false if the response status shows that retrying the request now fails the same way, otherwise true
+     */
+    public boolean releaseConnection(@Nullable HttpURLConnection urlConnection, boolean responseReceived) {
+        if (urlConnection == null) {
+            return true;
+        }
+
+        boolean retryable = true;
+        URL url = urlConnection.getURL();
+        if (url != null) {
+            retryable = handleResponse(circuitBreakers.getBreaker(url), urlConnection, responseReceived);
+        }
+
+        try {
+            transport.release(urlConnection, responseReceived);
+        } catch (Exception e) {
+            logger.error("Error closing connection", e);
+        }
+        return retryable;
+    }
+
+    /**
+     * @return false if the request should not be retried
+     */
+    private boolean handleResponse(@NonNull CircuitBreaker breaker, @NonNull HttpURLConnection urlConnection,
+                                   boolean responseReceived) {
+        int status = -1;
+        if (responseReceived) {
+            try {
+                status = urlConnection.getResponseCode();
+            } catch (Exception e) {
+                // handled as a network error
+            }
+        }
+        if (status == -1) {
+            breaker.recordResult(false);
+            return true;
+        }
+
+        switch (ResponsePolicy.classify(status)) {
+            case BACK_OFF:
+                long retryAfterMillis = ResponsePolicy.parseRetryAfterMillis(
+                        urlConnection.getHeaderField("Retry-After"), System.currentTimeMillis());
+                logger.warn("{} responded {}, pausing requests for {} ms", breaker.getEndpoint(), status, retryAfterMillis);
+                breaker.pause(retryAfterMillis);
+                return false;
+            case FAIL:
+                breaker.recordResult(true);
+                return false;
+            default:
+                breaker.recordResult(!ResponsePolicy.isEndpointFailure(status));
+                return true;
+        }
+    }
+
+    /**
+     * @param url a request url
+     * @return true if the {@link CircuitBreaker} of the url's endpoint fails requests immediately
+     */
+    public boolean isCircuitOpen(@NonNull URL url) {
+        return circuitBreakers.getBreaker(url).getState() != CircuitBreaker.State.CLOSED;
+    }
+
+    /**
+     * @param url a request url
+     * @return the time in milliseconds until requests to the url's endpoint are allowed again,
+     * 0 if they are allowed now
+     */
+    public long getPausedMillis(@NonNull URL url) {
+        return circuitBreakers.getBreaker(url).getRemainingOpenMillis();
+    }
+
+    /**
+     * Adds if-modified-since and if-none-match headers to the open {@link URLConnection} if their
+     * values are stored in {@link OptlyStorage}.
      * @param urlConnection an open {@link URLConnection}
      */
     public void setIfModifiedSince(@NonNull URLConnection urlConnection) {
@@ -93,14 +207,20 @@ public class Client {
             return;
         }
 
-        long lastModified = optlyStorage.getLong(urlConnection.getURL().toString(), 0);
+        String url = urlConnection.getURL().toString();
+        long lastModified = optlyStorage.getLong(url, 0);
         if (lastModified > 0) {
             urlConnection.setIfModifiedSince(lastModified);
         }
+        // the ETag still matches when the last modified time is too coarse or missing
+        String eTag = optlyStorage.getString(getETagKey(url), null);
+        if (eTag != null && !eTag.isEmpty()) {
+            urlConnection.setRequestProperty("If-None-Match", eTag);
+        }
     }
 
     /**
-     * Retrieves the last-modified head from a {@link URLConnection} and saves it
+     * Retrieves the last-modified and etag headers from a {@link URLConnection} and saves them
      * in {@link OptlyStorage}.
      * @param urlConnection a {@link URLConnection} instance
      */
@@ -110,33 +230,84 @@ public class Client {
             return;
         }
 
+        String url = urlConnection.getURL().toString();
         long lastModified = urlConnection.getLastModified();
         if (lastModified > 0) {
-            optlyStorage.saveLong(urlConnection.getURL().toString(), urlConnection.getLastModified());
+            optlyStorage.saveLong(url, lastModified);
         } else {
             logger.warn("CDN response didn't have a last modified header");
         }
+
+        String eTag = urlConnection.getHeaderField("ETag");
+        if (eTag != null && !eTag.isEmpty()) {
+            optlyStorage.saveString(getETagKey(url), eTag);
+        } else {
+            // an old ETag would match a response that is not cached
+            optlyStorage.remove(getETagKey(url));
+        }
+    }
+
+    /**
+     * Clears the last-modified and etag values saved for a url, so the next request for it
+     * gets the full response.
+     * @param optlyStorage the {@link OptlyStorage} holding the values
+     * @param url the request url
+     */
+    public static void clearLastModified(@NonNull OptlyStorage optlyStorage, @NonNull String url) {
+        // 1 millisecond past Jan 1, 1970
+        optlyStorage.saveLong(url, 1);
+        optlyStorage.remove(getETagKey(url));
+    }
+
+    @NonNull
+    static String getETagKey(@NonNull String url) {
+        return url + ETAG_KEY_SUFFIX;
+    }
+
+    /**
+     * Opens the response stream of a {@link URLConnection}, decoding a gzip content encoding.
+     * <p>
+     * Connections that set their own Accept-Encoding header get the encoded response from
+     * {@link HttpURLConnection}, which only decodes gzip it asked for itself.
+     * @param urlConnection a connected {@link URLConnection}
+     * @return the decoded response stream, to be closed by the caller
+     * @throws IOException if the stream cannot be opened
+     */
+    @NonNull
+    public InputStream getInputStream(@NonNull URLConnection urlConnection) throws IOException {
+        InputStream in = new BufferedInputStream(urlConnection.getInputStream(), READ_BUFFER_SIZE);
+        if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+            return new GZIPInputStream(in, READ_BUFFER_SIZE);
+        }
+        return in;
     }
 
     @Nullable
     public String readStream(@NonNull URLConnection urlConnection) {
-        Scanner scanner = null;
+        InputStream in = null;
         try {
-            InputStream in = new BufferedInputStream(urlConnection.getInputStream());
-            scanner = new Scanner(in).useDelimiter("\\A");
-            return scanner.hasNext() ? scanner.next() : "";
+            in = getInputStream(urlConnection);
+            Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+            // the content length is a hint, it is the encoded length or -1 when unknown
+            int contentLength = urlConnection.getContentLength();
+            StringBuilder sb = new StringBuilder(contentLength > 0 ? contentLength : READ_BUFFER_SIZE);
+            char[] buffer = new char[READ_BUFFER_SIZE];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+            return sb.toString();
         } catch (Exception e) {
             logger.warn("Error reading urlConnection stream.", e);
             return null;
         }
         finally {
-            if (scanner != null) {
-                // We assume that closing the scanner will close the associated input stream.
+            if (in != null) {
                 try {
-                    scanner.close();
+                    in.close();
                 }
                 catch (Exception e) {
-                    logger.error("Problem with closing the scanner on a input stream" , e);
+                    logger.error("Problem with closing the input stream" , e);
                 }
             }
         }
@@ -144,6 +315,9 @@ public class Client {
 
     /**
      * Executes a request with exponential backoff
+     * <p>
+     * Runs the attempts on the caller's thread with the {@link RetryPolicy#exponential(int, int)} policy,
+     * sleeping between them.  Use {@link #executeAsync(Request, RetryPolicy, Callback)} to not block the caller.
      * @param request the request executable, would be a lambda on Java 8
      * @param timeout the numerical base for the exponential backoff
      * @param power the number of retries
@@ -151,39 +325,23 @@ public class Client {
      * @return the response
      */
     public <T> T execute(Request<T> request, int timeout, int power) {
-        int baseTimeout = timeout;
-        T response = null;
-        int attempts = 0;
-        int maxAttempts = power + 1; // power represents retries, so total attempts = power + 1
-
-        while(attempts < maxAttempts) {
-            attempts++;
-            try {
-                response = request.execute();
-            } catch (Exception e) {
-                logger.error("Request failed with error: ", e);
-            }
-
-            if (response == null || response == Boolean.FALSE) {
-                // retry is disabled when timeout set to 0
-                if (timeout == 0) break;
-
-                // don't sleep if this was the last attempt
-                if (attempts >= maxAttempts) break;
+        return RetryScheduler.run(request, RetryPolicy.exponential(timeout, power), logger);
+    }
 
-                timeout = (int) Math.pow(baseTimeout, attempts);
-                try {
-                    logger.info("Request failed, waiting {} seconds to try again", timeout);
-                    Thread.sleep(TimeUnit.MILLISECONDS.convert(timeout, TimeUnit.SECONDS));
-                } catch (InterruptedException e) {
-                    logger.warn("Exponential backoff failed", e);
-                    break;
-                }
-            } else {
-                break;
-            }
-        }
-        return response;
+    /**
+     * Executes a request on a shared background scheduler, retrying failed attempts (null or FALSE responses,
+     * or exceptions) with the given policy.  No thread is blocked while waiting to retry.
+     * <p>
+     * Cancelling the returned future stops any pending retry.
+     * @param request the request executable
+     * @param policy when to retry failed attempts
+     * @param callback called with the final response on a background thread, or null
+     * @param <T> the response type of the request
+     * @return a future of the final response
+     */
+    @NonNull
+    public <T> Future<T> executeAsync(@NonNull Request<T> request, @NonNull RetryPolicy policy, @Nullable Callback<T> callback) {
+        return RetryScheduler.getShared().schedule(request, policy, callback, logger);
     }
 
     /**
@@ -192,5 +350,27 @@ public class Client {
      */
     public interface Request<T> {
         T execute();
+
+        /**
+         * Tells if a failed attempt fails the same way when retried, called after each attempt that returned
+         * null or FALSE or threw an exception.
+         * <p>
+         * Requests should return true when their endpoint's circuit breaker is open or when
+         * {@link Client#releaseConnection(HttpURLConnection, boolean)} returned false.
+         *
+         * @param response the response of the failed attempt (null or FALSE, null when it threw)
+         * @return true to stop retrying the request, false to retry it according to its {@link RetryPolicy}
+         */
+        default boolean isNotRetryable(@Nullable T response) {
+            return false;
+        }
+    }
+
+    /**
+     * Receives the final response of {@link #executeAsync(Request, RetryPolicy, Callback)}
+     * @param <T> The response type of the request
+     */
+    public interface Callback<T> {
+        void onComplete(@Nullable T response);
     }
 }
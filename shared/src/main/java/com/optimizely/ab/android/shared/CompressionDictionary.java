@@ -0,0 +1,82 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Adler32;
+
+/**
+ * Preset dictionaries for {@link EventHandlerUtils} compression.
+ * <p>
+ * Event payloads repeat the same keys in every request, which plain deflate cannot exploit for small payloads.
+ * A dictionary made of representative EventBatch and ODP payloads gives the compressor those strings up front.
+ * <p>
+ * The zlib header of a payload compressed with a dictionary holds the dictionary id (the Adler-32 checksum of the
+ * dictionary), so payloads compressed with older dictionaries can still be decompressed once a new version is
+ * added.  A dictionary must never be changed once released: add a new version and keep the old ones here.
+ */
+class CompressionDictionary {
+
+    // version 1: EventBatch (impression and conversion) and ODP event payloads.
+    // deflate finds closer matches cheaper, so the most frequent strings are at the end.
+    private static final byte[] V1 = (
+            "{\"type\":\"fullstack\",\"action\":\"identified\",\"identifiers\":{\"fs_user_id\":\"\",\"vuid\":\"vuid_\"},"
+            + "\"data\":{\"idempotence_id\":\"\",\"data_source_type\":\"sdk\",\"data_source\":\"android-sdk\","
+            + "\"data_source_version\":\"\",\"os\":\"Android\",\"os_version\":\"\",\"device_type\":\"Phone\",\"model\":\"\"}}"
+            + "{\"tags\":{\"revenue\":\"value\":},\"revenue\":,\"value\":"
+            + "\"type\":\"custom\",\"type\":\"fullstack\",\"key\":\"$opt_bot_filtering\",\"key\":\"$opt_user_agent\","
+            + "\"metadata\":{\"flag_key\":\"\",\"rule_key\":\"\",\"rule_type\":\"feature-test\",\"rule_type\":\"rollout\","
+            + "\"rule_type\":\"experiment\",\"variation_key\":\"\",\"enabled\":true},\"is_campaign_holdback\":false,"
+            + "{\"account_id\":\"\",\"project_id\":\"\",\"revision\":\"\",\"client_name\":\"android-sdk\","
+            + "\"client_version\":\"\",\"anonymize_ip\":true,\"enrich_decisions\":true,"
+            + "\"visitors\":[{\"attributes\":[{\"entity_id\":\"\",\"key\":\"\",\"type\":\"custom\",\"value\":\"\"}],"
+            + "\"snapshots\":[{\"decisions\":[{\"campaign_id\":\"\",\"experiment_id\":\"\",\"variation_id\":\"\","
+            + "\"events\":[{\"entity_id\":\"\",\"key\":\"campaign_activated\",\"timestamp\":,\"uuid\":\"\"}]}],"
+            + "\"visitor_id\":\"\"}]}"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private static final int V1_ID = idOf(V1);
+
+    private CompressionDictionary() {
+    }
+
+    /**
+     * @return the dictionary to compress with
+     */
+    @NonNull
+    static byte[] current() {
+        return V1;
+    }
+
+    /**
+     * @param id the dictionary id from the header of a compressed payload
+     * @return the dictionary, or null if it is unknown
+     */
+    @Nullable
+    static byte[] get(int id) {
+        return id == V1_ID ? V1 : null;
+    }
+
+    static int idOf(@NonNull byte[] dictionary) {
+        Adler32 adler32 = new Adler32();
+        adler32.update(dictionary, 0, dictionary.length);
+        return (int) adler32.getValue();
+    }
+}
@@ -17,74 +17,268 @@
 package com.optimizely.ab.android.shared;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 
 import org.apache.commons.codec.binary.Base64;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
 
 public class EventHandlerUtils {
 
     private static final int BUFFER_SIZE = 32*1024;
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
 
+    // easy way to compress without the preset dictionary (payloads compressed with it can still be decompressed)
+    public static boolean DICTIONARY_ENABLED = true;
+
+    // the max number of idle codecs kept for the next calls, extra codecs are ended to free their native memory
+    private static final int MAX_POOLED_CODECS = 2;
+
+    // codecs and buffers are reused by the next calls on any thread, instead of allocated for every call
+    private static final Deque<Codec> codecs = new ArrayDeque<>(MAX_POOLED_CODECS);
+
+    /**
+     * Compress a string for WorkManager data.
+     * @param decompressed the string to compress
+     * @return the compressed UTF-8 bytes of the string, encoded to Base64
+     */
     public static String compress(@NonNull String decompressed) throws IOException {
-        byte[] data = decompressed.getBytes();
+        byte[] bytes = compress(decompressed.getBytes(CHARSET));
+        // encoded to Base64 (instead of byte[] since WorkManager.Data size is unexpectedly expanded with byte[]).
+        return encodeToBase64(bytes);
+    }
 
-        final Deflater deflater = new Deflater();
-        deflater.setInput(data);
+    /**
+     * Decompress a string compressed with {@link #compress(String)}.
+     * @param base64 the compressed string
+     * @return the decompressed string
+     */
+    public static String decompress(@NonNull String base64) throws Exception {
+        return new String(decompress(decodeFromBase64(base64)), CHARSET);
+    }
 
-        try (final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length)) {
+    /**
+     * Deflate raw bytes, with the current {@link CompressionDictionary} unless disabled.
+     * @param data the bytes to compress
+     * @return the compressed bytes
+     */
+    public static byte[] compress(@NonNull byte[] data) throws IOException {
+        Codec codec = Codec.acquire();
+        try {
+            Deflater deflater = codec.deflater();
+            deflater.setInput(data);
             deflater.finish();
-            final byte[] buffer = new byte[BUFFER_SIZE];
+            ByteArrayOutputStream outputStream = codec.output(data.length / 2);
             while (!deflater.finished()) {
-                final int count = deflater.deflate(buffer);
-                outputStream.write(buffer, 0, count);
+                final int count = deflater.deflate(codec.buffer);
+                outputStream.write(codec.buffer, 0, count);
             }
 
-            byte[] bytes = outputStream.toByteArray();
-            // encoded to Base64 (instead of byte[] since WorkManager.Data size is unexpectedly expanded with byte[]).
-            return encodeToBase64(bytes);
+            return outputStream.toByteArray();
         }
         finally {
-            deflater.end();
+            codec.release();
         }
     }
 
-    public static String decompress(@NonNull String base64) throws Exception {
-        byte[] data = decodeFromBase64(base64);
+    /**
+     * Inflate bytes compressed with {@link #compress(byte[])}.
+     * @param data the compressed bytes
+     * @return the decompressed bytes
+     */
+    public static byte[] decompress(@NonNull byte[] data) throws IOException, DataFormatException {
+        Codec codec = Codec.acquire();
+        try {
+            Inflater inflater = codec.inflater;
+            inflater.setInput(data);
+            ByteArrayOutputStream outputStream = codec.output(data.length * 4);
+            while (!inflater.finished()) {
+                final int count = inflater.inflate(codec.buffer);
+                if (count == 0 && inflater.needsDictionary()) {
+                    setDictionary(inflater);
+                } else if (count == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated compressed data");
+                }
+                outputStream.write(codec.buffer, 0, count);
+            }
 
-        final Inflater inflater = new Inflater();
-        inflater.setInput(data);
+            return outputStream.toByteArray();
+        }
+        finally {
+            codec.release();
+        }
+    }
 
-        try (final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length)) {
-            byte[] buffer = new byte[BUFFER_SIZE];
-            while (!inflater.finished()) {
-                final int count = inflater.inflate(buffer);
-                outputStream.write(buffer, 0, count);
+    /**
+     * Deflate a stream, without holding the whole input or output in memory.
+     * The current {@link CompressionDictionary} is used unless disabled.
+     * @param in the bytes to compress, read to the end but not closed
+     * @param out receives the compressed bytes, not closed
+     */
+    public static void compress(@NonNull InputStream in, @NonNull OutputStream out) throws IOException {
+        Codec codec = Codec.acquire();
+        try {
+            Deflater deflater = codec.deflater();
+            // the input is read into the second half of the buffer, the first half receives the output
+            int half = codec.buffer.length / 2;
+            int read;
+            while ((read = in.read(codec.buffer, half, half)) != -1) {
+                deflater.setInput(codec.buffer, half, read);
+                while (!deflater.needsInput()) {
+                    out.write(codec.buffer, 0, deflater.deflate(codec.buffer, 0, half));
+                }
             }
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.write(codec.buffer, 0, deflater.deflate(codec.buffer, 0, half));
+            }
+        }
+        finally {
+            codec.release();
+        }
+    }
 
-            return outputStream.toString();
+    /**
+     * Inflate a stream compressed with {@link #compress(byte[])} or {@link #compress(InputStream, OutputStream)},
+     * without holding the whole input or output in memory.
+     * @param in the compressed bytes, read past the end of the compressed data but not closed
+     * @param out receives the decompressed bytes, not closed
+     */
+    public static void decompress(@NonNull InputStream in, @NonNull OutputStream out) throws IOException, DataFormatException {
+        Codec codec = Codec.acquire();
+        try {
+            Inflater inflater = codec.inflater;
+            int half = codec.buffer.length / 2;
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    int read = in.read(codec.buffer, half, half);
+                    if (read == -1) {
+                        throw new DataFormatException("Truncated compressed data");
+                    }
+                    inflater.setInput(codec.buffer, half, read);
+                }
+                int count = inflater.inflate(codec.buffer, 0, half);
+                if (count == 0 && inflater.needsDictionary()) {
+                    setDictionary(inflater);
+                }
+                out.write(codec.buffer, 0, count);
+            }
         }
         finally {
-            inflater.end();
+            codec.release();
         }
     }
 
+    /**
+     * Set the dictionary a payload was compressed with, from the dictionary id in its header.
+     */
+    private static void setDictionary(@NonNull Inflater inflater) throws DataFormatException {
+        byte[] dictionary = CompressionDictionary.get(inflater.getAdler());
+        if (dictionary == null) {
+            throw new DataFormatException("Unknown compression dictionary " + Integer.toHexString(inflater.getAdler()));
+        }
+        inflater.setDictionary(dictionary);
+    }
+
     static String encodeToBase64(byte[] bytes) {
         // - org.apache.commons.Base64 is used (instead of android.util.Base64) for unit testing
         // - encodeBase64() for backward compatibility (instead of encodeBase64String()).
         String base64 = "";
         if (bytes != null) {
             byte[] encoded = Base64.encodeBase64(bytes);
-            base64 = new String(encoded);
+            base64 = new String(encoded, StandardCharsets.US_ASCII);
         }
         return base64;
     }
 
     static byte[] decodeFromBase64(String base64) {
-        return Base64.decodeBase64(base64.getBytes());
+        return Base64.decodeBase64(base64.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return the number of idle codecs kept for the next calls
+     */
+    @VisibleForTesting
+    static int getPooledCodecCount() {
+        synchronized (codecs) {
+            return codecs.size();
+        }
+    }
+
+    /**
+     * A deflater, an inflater and buffers, reset after each use.
+     */
+    private static class Codec {
+        // output buffers that grew over this size are not kept for the next call
+        private static final int MAX_RETAINED_OUTPUT = 256 * 1024;
+
+        private final Deflater deflater = new Deflater();
+        final Inflater inflater = new Inflater();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        private ByteArrayOutputStream output;
+
+        /**
+         * @return an idle codec from the pool, or a new codec if there is none (concurrent or nested calls)
+         */
+        static Codec acquire() {
+            synchronized (codecs) {
+                Codec codec = codecs.poll();
+                if (codec != null) {
+                    return codec;
+                }
+            }
+            return new Codec();
+        }
+
+        /**
+         * @return the deflater, with the preset dictionary set unless disabled
+         */
+        Deflater deflater() {
+            if (DICTIONARY_ENABLED) {
+                deflater.setDictionary(CompressionDictionary.current());
+            }
+            return deflater;
+        }
+
+        ByteArrayOutputStream output(int expectedSize) {
+            if (output == null) {
+                output = new ByteArrayOutputStream(Math.max(64, Math.min(expectedSize, MAX_RETAINED_OUTPUT)));
+            }
+            return output;
+        }
+
+        /**
+         * Return the codec to the pool, or end it when the pool is full.
+         */
+        void release() {
+            deflater.reset();
+            inflater.reset();
+            if (output != null) {
+                if (output.size() > MAX_RETAINED_OUTPUT) {
+                    output = null;
+                } else {
+                    output.reset();
+                }
+            }
+            synchronized (codecs) {
+                if (codecs.size() < MAX_POOLED_CODECS) {
+                    codecs.push(this);
+                    return;
+                }
+            }
+            deflater.end();
+            inflater.end();
+        }
     }
 
 }
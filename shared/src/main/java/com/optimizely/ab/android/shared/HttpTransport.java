@@ -0,0 +1,53 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Opens and releases the http connections used by {@link Client}.
+ * <p>
+ * Implementations may pool connections, so callers must hand every opened connection back to
+ * {@link #release(HttpURLConnection, boolean)} instead of calling {@link HttpURLConnection#disconnect()}.
+ *
+ * @see PooledHttpTransport
+ */
+public interface HttpTransport {
+
+    /**
+     * Open a new connection.
+     *
+     * @param url the request url
+     * @return an unconnected {@link HttpURLConnection}
+     * @throws IOException if the connection cannot be opened
+     */
+    @NonNull
+    HttpURLConnection open(@NonNull URL url) throws IOException;
+
+    /**
+     * Release a connection when the caller is done with it.
+     *
+     * @param connection a connection returned by {@link #open(URL)}
+     * @param responseReceived true if the response status was read, so the connection may be kept alive.
+     *                         Connections that failed before a response are always closed.
+     */
+    void release(@NonNull HttpURLConnection connection, boolean responseReceived);
+}
@@ -0,0 +1,259 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks the default network with a {@link ConnectivityManager.NetworkCallback}.
+ * <p>
+ * The callback is registered on first use and stays registered for the life of the process, so reading the
+ * state does not query the system service.  {@link Listener}s are told when the device gets internet back.
+ */
+public class NetworkMonitor implements NetworkStateProvider {
+
+    /**
+     * Told when the default network changes to one with validated internet, on a ConnectivityManager thread.
+     */
+    public interface Listener {
+        void onInternetAvailable(@NonNull NetworkState state);
+    }
+
+    @Nullable private static NetworkMonitor instance;
+
+    @Nullable private final ConnectivityManager connectivityManager;
+    @NonNull private final Logger logger;
+    @NonNull private volatile NetworkState state = NetworkState.DISCONNECTED;
+    private boolean registered;
+    @NonNull private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    NetworkMonitor(@Nullable ConnectivityManager connectivityManager, @NonNull Logger logger) {
+        this.connectivityManager = connectivityManager;
+        this.logger = logger;
+    }
+
+    /**
+     * @param context any valid Android {@link Context}
+     * @return the monitor shared by the SDK
+     */
+    @NonNull
+    public static synchronized NetworkMonitor getInstance(@NonNull Context context) {
+        if (instance == null) {
+            // the application context, so the system service does not hold on to an activity
+            Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+            ConnectivityManager connectivityManager =
+                    (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+            instance = new NetworkMonitor(connectivityManager, LoggerFactory.getLogger(NetworkMonitor.class));
+        }
+        return instance;
+    }
+
+    @NonNull
+    @Override
+    public NetworkState getNetworkState() {
+        if (register()) {
+            return state;
+        }
+        return queryNetworkState();
+    }
+
+    /**
+     * Add a listener, which is kept for the life of the process unless removed
+     *
+     * @param listener told when the device gets internet
+     * @return true if the network is monitored, false if the listener will never be called
+     */
+    public boolean addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+        return register();
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return true if the callback is registered
+     */
+    private synchronized boolean register() {
+        if (registered || connectivityManager == null) {
+            return registered;
+        }
+
+        try {
+            state = queryNetworkState();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                connectivityManager.registerDefaultNetworkCallback(new DefaultNetworkCallback());
+            } else {
+                NetworkRequest request = new NetworkRequest.Builder()
+                        .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                        .build();
+                connectivityManager.registerNetworkCallback(request, new AnyNetworkCallback());
+            }
+            registered = true;
+        } catch (Exception e) {
+            // SecurityException without ACCESS_NETWORK_STATE, or too many callbacks registered by the app
+            logger.warn("Unable to monitor the network, querying it instead", e);
+        }
+        return registered;
+    }
+
+    void setState(@NonNull NetworkState state) {
+        NetworkState previous = this.state;
+        this.state = state;
+        if (state.equals(previous)) {
+            return;
+        }
+
+        logger.debug("Network changed: {}", state);
+        if (hasInternet(state) && !hasInternet(previous)) {
+            for (Listener listener : listeners) {
+                try {
+                    listener.onInternetAvailable(state);
+                } catch (Exception e) {
+                    logger.warn("Network listener failed", e);
+                }
+            }
+        }
+    }
+
+    private static boolean hasInternet(@NonNull NetworkState state) {
+        return state.isConnected() && state.validated;
+    }
+
+    /**
+     * @return the state of the active network, queried from the system service
+     */
+    @NonNull
+    @SuppressWarnings("deprecation")
+    NetworkState queryNetworkState() {
+        if (connectivityManager == null) {
+            return NetworkState.DISCONNECTED;
+        }
+
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                Network network = connectivityManager.getActiveNetwork();
+                NetworkCapabilities capabilities = network != null ? connectivityManager.getNetworkCapabilities(network) : null;
+                return capabilities != null ? fromCapabilities(network, capabilities) : NetworkState.DISCONNECTED;
+            }
+
+            NetworkInfo info = connectivityManager.getActiveNetworkInfo();
+            if (info == null || !info.isConnected()) {
+                return NetworkState.DISCONNECTED;
+            }
+            NetworkState.Transport transport;
+            switch (info.getType()) {
+                case ConnectivityManager.TYPE_WIFI:
+                    transport = NetworkState.Transport.WIFI;
+                    break;
+                case ConnectivityManager.TYPE_MOBILE:
+                    transport = NetworkState.Transport.CELLULAR;
+                    break;
+                case ConnectivityManager.TYPE_ETHERNET:
+                    transport = NetworkState.Transport.ETHERNET;
+                    break;
+                default:
+                    transport = NetworkState.Transport.OTHER;
+                    break;
+            }
+            return new NetworkState(transport, true, connectivityManager.isActiveNetworkMetered(), info.isRoaming(), 0);
+        } catch (Exception e) {
+            logger.warn("Unable to query the network", e);
+            return NetworkState.DISCONNECTED;
+        }
+    }
+
+    @NonNull
+    @SuppressWarnings("deprecation")
+    private NetworkState fromCapabilities(@NonNull Network network, @NonNull NetworkCapabilities capabilities) {
+        NetworkState.Transport transport;
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+            transport = NetworkState.Transport.WIFI;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+            transport = NetworkState.Transport.CELLULAR;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+            transport = NetworkState.Transport.ETHERNET;
+        } else {
+            transport = NetworkState.Transport.OTHER;
+        }
+
+        boolean validated = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                ? capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)
+                : capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+        boolean metered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        boolean roaming;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            roaming = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_ROAMING);
+        } else {
+            NetworkInfo info = connectivityManager != null ? connectivityManager.getNetworkInfo(network) : null;
+            roaming = info != null && info.isRoaming();
+        }
+        return new NetworkState(transport, validated, metered, roaming, capabilities.getLinkDownstreamBandwidthKbps());
+    }
+
+    /**
+     * Follows the default network (API 24+).
+     */
+    private class DefaultNetworkCallback extends ConnectivityManager.NetworkCallback {
+        @Override
+        public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities capabilities) {
+            setState(fromCapabilities(network, capabilities));
+        }
+
+        @Override
+        public void onLost(@NonNull Network network) {
+            // the next default network is reported by another callback
+            setState(NetworkState.DISCONNECTED);
+        }
+    }
+
+    /**
+     * Follows every network with internet, the active one is queried on changes (API 21-23).
+     */
+    private class AnyNetworkCallback extends ConnectivityManager.NetworkCallback {
+        @Override
+        public void onAvailable(@NonNull Network network) {
+            setState(queryNetworkState());
+        }
+
+        @Override
+        public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities capabilities) {
+            setState(queryNetworkState());
+        }
+
+        @Override
+        public void onLost(@NonNull Network network) {
+            setState(queryNetworkState());
+        }
+    }
+}
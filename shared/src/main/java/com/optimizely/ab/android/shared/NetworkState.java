@@ -0,0 +1,92 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A snapshot of the network the device uses by default.
+ *
+ * @see NetworkStateProvider
+ */
+public class NetworkState {
+
+    public enum Transport {
+        NONE,
+        WIFI,
+        CELLULAR,
+        ETHERNET,
+        OTHER
+    }
+
+    public static final NetworkState DISCONNECTED = new NetworkState(Transport.NONE, false, true, false, 0);
+
+    @NonNull public final Transport transport;
+    // true if the network was found to reach the internet
+    public final boolean validated;
+    public final boolean metered;
+    public final boolean roaming;
+    // the estimated downstream bandwidth in kbps, 0 if unknown
+    public final int downstreamKbps;
+
+    public NetworkState(@NonNull Transport transport, boolean validated, boolean metered, boolean roaming,
+                        int downstreamKbps) {
+        this.transport = transport;
+        this.validated = validated;
+        this.metered = metered;
+        this.roaming = roaming;
+        this.downstreamKbps = downstreamKbps;
+    }
+
+    public boolean isConnected() {
+        return transport != Transport.NONE;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof NetworkState)) {
+            return false;
+        }
+        NetworkState state = (NetworkState) other;
+        return transport == state.transport && validated == state.validated && metered == state.metered &&
+                roaming == state.roaming && downstreamKbps == state.downstreamKbps;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = transport.hashCode();
+        result = 31 * result + (validated ? 1 : 0);
+        result = 31 * result + (metered ? 1 : 0);
+        result = 31 * result + (roaming ? 1 : 0);
+        result = 31 * result + downstreamKbps;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkState{" +
+                "transport=" + transport +
+                ", validated=" + validated +
+                ", metered=" + metered +
+                ", roaming=" + roaming +
+                ", downstreamKbps=" + downstreamKbps +
+                '}';
+    }
+}
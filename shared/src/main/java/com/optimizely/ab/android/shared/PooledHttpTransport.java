@@ -0,0 +1,155 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * The default {@link HttpTransport}.
+ * <p>
+ * {@link HttpURLConnection} keeps idle keep-alive connections in a per-host pool, but only takes a
+ * connection back when its response stream was read to the end and closed. Calling
+ * {@link HttpURLConnection#disconnect()} closes the socket instead and forces a new TCP and TLS handshake
+ * on the next request. This transport drains and closes the response on release, and only disconnects
+ * connections that failed or have a large unread response.
+ * <p>
+ * On API 21 and below, a single TLSv1.2 {@link SSLSocketFactory} is created on first use and set on each
+ * https connection. Reusing the same factory instance lets those connections be pooled as well.
+ */
+public class PooledHttpTransport implements HttpTransport {
+
+    // unread responses larger than this are cheaper to close than to drain
+    static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private static final int DRAIN_BUFFER_SIZE = 4 * 1024;
+
+    @Nullable private static PooledHttpTransport defaultTransport;
+
+    @Nullable private SSLSocketFactory sslSocketFactory;
+    private boolean sslSocketFactoryInitialized;
+
+    /**
+     * @return the transport shared by all clients that are not given their own
+     */
+    @NonNull
+    public static synchronized PooledHttpTransport getDefault() {
+        if (defaultTransport == null) {
+            defaultTransport = new PooledHttpTransport();
+        }
+        return defaultTransport;
+    }
+
+    @NonNull
+    @Override
+    public HttpURLConnection open(@NonNull URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (connection instanceof HttpsURLConnection) {
+            SSLSocketFactory factory = getSSLSocketFactory();
+            if (factory != null) {
+                ((HttpsURLConnection) connection).setSSLSocketFactory(factory);
+            }
+        }
+        return connection;
+    }
+
+    @Override
+    public void release(@NonNull HttpURLConnection connection, boolean responseReceived) {
+        if (!responseReceived || !drain(connection)) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @return the TLSv1.2 socket factory on API 21 and below, null to use the platform default
+     * @throws IOException if the factory cannot be created
+     */
+    @Nullable
+    synchronized SSLSocketFactory getSSLSocketFactory() throws IOException {
+        // API 21 (LOLLIPOP)+ supposed to use TLS1.2 as default, but some API-21 devices still fail, so include it here.
+        if (!sslSocketFactoryInitialized) {
+            if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.LOLLIPOP) {
+                try {
+                    sslSocketFactory = new TLSSocketFactory();
+                } catch (Exception e) {
+                    throw new IOException("Unable to create TLS socket factory", e);
+                }
+            }
+            sslSocketFactoryInitialized = true;
+        }
+        return sslSocketFactory;
+    }
+
+    /**
+     * Read the rest of the response and close it, so the connection goes back to the pool.
+     * <p>
+     * Responses already read and closed by the caller fail on the first read here. Those connections were
+     * already returned to the pool (or closed) by the platform, so they must not be disconnected.
+     *
+     * @param connection a connection whose response status was read
+     * @return false if the connection should be disconnected
+     */
+    private static boolean drain(@NonNull HttpURLConnection connection) {
+        InputStream in = null;
+        try {
+            try {
+                in = connection.getInputStream();
+            } catch (IOException e) {
+                // error responses are read from the error stream
+                in = connection.getErrorStream();
+            }
+            if (in == null) {
+                // no response body
+                return true;
+            }
+
+            byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+            int total = 0;
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                total += count;
+                if (total > MAX_DRAIN_BYTES) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            // already closed, or the platform dropped the broken connection
+            return true;
+        } catch (Exception e) {
+            return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // the connection is disconnected when draining fails
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes request bodies to {@link HttpURLConnection}s, optionally with gzip content encoding.
+ */
+public class RequestBodyWriter {
+
+    // gzip is disabled when the threshold is set to this value
+    public static final int GZIP_DISABLED = -1;
+
+    private static final int GZIP_BUFFER_SIZE = 8 * 1024;
+
+    private RequestBodyWriter() {
+    }
+
+    /**
+     * Write a UTF-8 request body and close the output stream.
+     * <p>
+     * Bodies at or over the gzip threshold are sent with "Content-Encoding: gzip", compressed while streaming
+     * into the connection with chunked transfer encoding, so no compressed copy is held in memory.
+     * The connection must not be connected yet.
+     *
+     * @param urlConnection an open connection with doOutput set
+     * @param body the request body
+     * @param gzipThreshold the min body size in bytes for gzip encoding ({@link #GZIP_DISABLED} to never gzip)
+     * @throws IOException if the body cannot be written
+     */
+    public static void write(@NonNull HttpURLConnection urlConnection, @NonNull String body, int gzipThreshold) throws IOException {
+        write(urlConnection, body, gzipThreshold, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Write a UTF-8 request body and close the output stream, compressing gzip encoded bodies at the given level.
+     *
+     * @param urlConnection an open connection with doOutput set
+     * @param body the request body
+     * @param gzipThreshold the min body size in bytes for gzip encoding ({@link #GZIP_DISABLED} to never gzip)
+     * @param gzipLevel the compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     * @throws IOException if the body cannot be written
+     * @see #write(HttpURLConnection, String, int)
+     */
+    public static void write(@NonNull HttpURLConnection urlConnection, @NonNull String body, int gzipThreshold, int gzipLevel) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        if (gzipThreshold < 0 || bytes.length < gzipThreshold) {
+            OutputStream outputStream = urlConnection.getOutputStream();
+            outputStream.write(bytes);
+            outputStream.flush();
+            outputStream.close();
+            return;
+        }
+
+        urlConnection.setRequestProperty("Content-Encoding", "gzip");
+        // the compressed length is unknown up front
+        urlConnection.setChunkedStreamingMode(0);
+        GZIPOutputStream gzipOutputStream = new LeveledGZIPOutputStream(urlConnection.getOutputStream(), gzipLevel);
+        try {
+            gzipOutputStream.write(bytes);
+            gzipOutputStream.finish();
+            gzipOutputStream.flush();
+        } finally {
+            gzipOutputStream.close();
+        }
+    }
+
+    /**
+     * A {@link GZIPOutputStream} compressing at a given level, since the level of its deflater is not a constructor
+     * parameter.
+     */
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+        LeveledGZIPOutputStream(@NonNull OutputStream out, int level) throws IOException {
+            super(out, GZIP_BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How {@link Client} handles http response statuses, shared by all clients.
+ */
+public class ResponsePolicy {
+
+    // the pause when a 429 or 503 response has no valid Retry-After header
+    public static long DEFAULT_RETRY_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    // the longest pause accepted from a Retry-After header
+    public static long MAX_RETRY_AFTER_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    public enum Action {
+        /**
+         * The request succeeded (2xx or 304).
+         */
+        SUCCESS,
+        /**
+         * The request may succeed if retried (5xx, 408, unexpected statuses).
+         */
+        RETRY,
+        /**
+         * The endpoint is overloaded (429, 503).  No request should be sent to it until the Retry-After time.
+         */
+        BACK_OFF,
+        /**
+         * The request was refused (other 4xx) and fails the same way if retried now.  The request itself may be invalid,
+         * see {@link #isInvalidRequest(int)}, or a proxy or captive portal may refuse all requests for a while.
+         */
+        FAIL
+    }
+
+    private ResponsePolicy() {
+    }
+
+    @NonNull
+    public static Action classify(int status) {
+        if ((status >= 200 && status < 300) || status == 304) {
+            return Action.SUCCESS;
+        }
+        if (status == 429 || status == 503) {
+            return Action.BACK_OFF;
+        }
+        if (status >= 400 && status < 500 && status != 408) {
+            return Action.FAIL;
+        }
+        return Action.RETRY;
+    }
+
+    /**
+     * @param status an http response status
+     * @return true if the status shows that the request itself is invalid (400, 422) or too large (413),
+     * so it fails whenever it is sent
+     */
+    public static boolean isInvalidRequest(int status) {
+        return status == 400 || status == 413 || status == 422;
+    }
+
+    /**
+     * @param status an http response status
+     * @return true if the status shows that the endpoint itself is failing
+     */
+    static boolean isEndpointFailure(int status) {
+        return (status >= 500 && status != 503) || status == 408;
+    }
+
+    /**
+     * Parse a Retry-After header, in delay-seconds or http-date form.
+     *
+     * @param value the header value, or null
+     * @param now the current time in milliseconds
+     * @return the delay in milliseconds, capped to {@link #MAX_RETRY_AFTER_MILLIS},
+     * or {@link #DEFAULT_RETRY_AFTER_MILLIS} if the header is missing or invalid
+     */
+    public static long parseRetryAfterMillis(@Nullable String value, long now) {
+        long delayMillis = DEFAULT_RETRY_AFTER_MILLIS;
+        if (value != null && !value.trim().isEmpty()) {
+            value = value.trim();
+            try {
+                delayMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+                format.setTimeZone(TimeZone.getTimeZone("GMT"));
+                try {
+                    Date date = format.parse(value);
+                    delayMillis = date.getTime() - now;
+                } catch (ParseException e1) {
+                    // the default delay is used
+                }
+            }
+        }
+        return Math.max(0, Math.min(delayMillis, MAX_RETRY_AFTER_MILLIS));
+    }
+}
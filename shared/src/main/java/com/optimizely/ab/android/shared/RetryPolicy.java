@@ -0,0 +1,100 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import androidx.annotation.NonNull;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How {@link Client#executeAsync(Client.Request, RetryPolicy, Client.Callback)} retries failed requests.
+ */
+public class RetryPolicy {
+
+    /**
+     * Never retry.
+     */
+    public static final RetryPolicy NO_RETRY = new RetryPolicy(0, 0, 0, 0, false);
+
+    final int maxRetries;
+    final long baseDelayMillis;
+    final long maxDelayMillis;
+    final long deadlineMillis;
+    final boolean jitter;
+
+    private RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis, long deadlineMillis, boolean jitter) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.deadlineMillis = deadlineMillis;
+        this.jitter = jitter;
+    }
+
+    /**
+     * The schedule of {@link Client#execute(Client.Request, int, int)}: the nth retry waits timeout^n seconds.
+     *
+     * @param timeout the numerical base for the exponential backoff, 0 disables retries
+     * @param power   the number of retries
+     * @return the retry policy
+     */
+    @NonNull
+    public static RetryPolicy exponential(int timeout, int power) {
+        if (timeout <= 0) {
+            return NO_RETRY;
+        }
+        long baseDelayMillis = TimeUnit.SECONDS.toMillis(timeout);
+        return new RetryPolicy(power, baseDelayMillis, Long.MAX_VALUE, 0, false);
+    }
+
+    /**
+     * Decorrelated jitter: each retry waits a random time between the base delay and three times the
+     * previous delay, capped at the max delay.  Clients failing at the same time spread their retries out
+     * instead of retrying in lockstep.
+     *
+     * @param maxRetries      the max number of retries
+     * @param baseDelayMillis the min delay between attempts
+     * @param maxDelayMillis  the max delay between attempts
+     * @param deadlineMillis  no retry is scheduled past this time after the first attempt (0 for no deadline)
+     * @return the retry policy
+     */
+    @NonNull
+    public static RetryPolicy decorrelatedJitter(int maxRetries, long baseDelayMillis, long maxDelayMillis, long deadlineMillis) {
+        return new RetryPolicy(maxRetries, Math.max(1, baseDelayMillis), Math.max(baseDelayMillis, maxDelayMillis),
+                deadlineMillis, true);
+    }
+
+    /**
+     * @param retry              the 1-based number of the retry to schedule
+     * @param previousDelayMillis the delay before the previous retry (0 for the first retry)
+     * @param random             the random source for jitter
+     * @return the delay before the retry in milliseconds
+     */
+    long nextDelayMillis(int retry, long previousDelayMillis, @NonNull Random random) {
+        if (!jitter) {
+            double delay = Math.pow(baseDelayMillis / 1000.0, retry) * 1000;
+            return (long) Math.min(delay, maxDelayMillis);
+        }
+
+        long upper = Math.max(baseDelayMillis, previousDelayMillis * 3);
+        if (upper <= baseDelayMillis) {
+            return baseDelayMillis;
+        }
+        long delay = baseDelayMillis + (long) (random.nextDouble() * (upper - baseDelayMillis));
+        return Math.min(delay, maxDelayMillis);
+    }
+}
@@ -0,0 +1,315 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.slf4j.Logger;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link Client.Request}s with retries, without blocking a thread between attempts.
+ * <p>
+ * Attempts run on a pool of worker threads that only exist while a request is in flight.  The delays
+ * between attempts are kept by a single timer thread, so a failing request no longer parks its caller's
+ * thread (a WorkManager or executor thread) for the whole backoff.
+ * <p>
+ * Callers that wait for the response anyway use {@link #run(Client.Request, RetryPolicy, Logger)}, which
+ * runs the attempts on the caller's thread instead of parking it on a worker.
+ */
+class RetryScheduler {
+
+    @Nullable private static RetryScheduler sharedScheduler;
+
+    @NonNull private final ScheduledExecutorService timer;
+    @NonNull private final ExecutorService workers;
+    @NonNull private static final Random random = new Random();
+
+    RetryScheduler(@NonNull ScheduledExecutorService timer, @NonNull ExecutorService workers) {
+        this.timer = timer;
+        this.workers = workers;
+    }
+
+    /**
+     * @return the scheduler shared by all {@link Client}s
+     */
+    @NonNull
+    static synchronized RetryScheduler getShared() {
+        if (sharedScheduler == null) {
+            sharedScheduler = new RetryScheduler(
+                    Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("optly-retry-timer")),
+                    Executors.newCachedThreadPool(new DaemonThreadFactory("optly-request")));
+        }
+        return sharedScheduler;
+    }
+
+    /**
+     * Start a request.  The first attempt runs right away on a worker thread.
+     *
+     * @param request  the request
+     * @param policy   when to retry failed attempts
+     * @param callback called with the final response, unless the request is cancelled
+     * @param logger   the logger of the client
+     * @param <T>      the response type of the request
+     * @return a future of the final response, null or FALSE if every attempt failed
+     */
+    @NonNull
+    <T> Future<T> schedule(@NonNull Client.Request<T> request, @NonNull RetryPolicy policy,
+                           @Nullable Client.Callback<T> callback, @NonNull Logger logger) {
+        RetryTask<T> task = new RetryTask<>(request, policy, callback, logger);
+        task.submit();
+        return task;
+    }
+
+    /**
+     * Run a request on the caller's thread, sleeping between attempts.
+     *
+     * @param request the request
+     * @param policy  when to retry failed attempts
+     * @param logger  the logger of the client
+     * @param <T>     the response type of the request
+     * @return the final response, null or FALSE if every attempt failed or the thread was interrupted
+     */
+    @Nullable
+    static <T> T run(@NonNull Client.Request<T> request, @NonNull RetryPolicy policy, @NonNull Logger logger) {
+        long deadline = deadline(policy);
+        int attempts = 0;
+        long lastDelayMillis = 0;
+        while (true) {
+            attempts++;
+            T result = attempt(request, logger);
+            boolean retryable = isSuccess(result) || !request.isNotRetryable(result);
+
+            long delayMillis = retryDelayMillis(result, retryable, attempts, lastDelayMillis, deadline, policy, logger);
+            if (delayMillis < 0) {
+                return result;
+            }
+            lastDelayMillis = delayMillis;
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                logger.warn("Exponential backoff failed", e);
+                Thread.currentThread().interrupt();
+                return result;
+            }
+        }
+    }
+
+    static boolean isSuccess(@Nullable Object response) {
+        return response != null && response != Boolean.FALSE;
+    }
+
+    private static long deadline(@NonNull RetryPolicy policy) {
+        return policy.deadlineMillis > 0 ? System.currentTimeMillis() + policy.deadlineMillis : Long.MAX_VALUE;
+    }
+
+    @Nullable
+    private static <T> T attempt(@NonNull Client.Request<T> request, @NonNull Logger logger) {
+        try {
+            return request.execute();
+        } catch (Exception e) {
+            logger.error("Request failed with error: ", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the delay before the next attempt in milliseconds, or -1 if the request is complete
+     */
+    private static long retryDelayMillis(@Nullable Object result, boolean retryable, int attempts, long lastDelayMillis,
+                                         long deadline, @NonNull RetryPolicy policy, @NonNull Logger logger) {
+        if (isSuccess(result) || attempts > policy.maxRetries) {
+            return -1;
+        }
+        if (!retryable) {
+            logger.info("Request failed with a non-retryable error, not retrying");
+            return -1;
+        }
+
+        long delayMillis = policy.nextDelayMillis(attempts, lastDelayMillis, random);
+        if (System.currentTimeMillis() + delayMillis > deadline) {
+            logger.info("Request failed, no retry before the deadline");
+            return -1;
+        }
+
+        if (delayMillis % 1000 == 0 && delayMillis / 1000 <= Integer.MAX_VALUE) {
+            logger.info("Request failed, waiting {} seconds to try again", (int) (delayMillis / 1000));
+        } else {
+            logger.info("Request failed, waiting {} ms to try again", delayMillis);
+        }
+        return delayMillis;
+    }
+
+    private class RetryTask<T> implements Future<T>, Runnable {
+        @NonNull private final Client.Request<T> request;
+        @NonNull private final RetryPolicy policy;
+        @Nullable private final Client.Callback<T> callback;
+        @NonNull private final Logger logger;
+        private final long deadline;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private int attempts;
+        private long lastDelayMillis;
+        @Nullable private T response;
+        @Nullable private Future<?> pending;
+        private boolean cancelled;
+
+        RetryTask(@NonNull Client.Request<T> request, @NonNull RetryPolicy policy,
+                  @Nullable Client.Callback<T> callback, @NonNull Logger logger) {
+            this.request = request;
+            this.policy = policy;
+            this.callback = callback;
+            this.logger = logger;
+            this.deadline = deadline(policy);
+        }
+
+        synchronized void submit() {
+            if (!cancelled) {
+                pending = workers.submit(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                attempts++;
+            }
+
+            T result = attempt(request, logger);
+            boolean retryable = isSuccess(result) || !request.isNotRetryable(result);
+
+            if (scheduleRetry(result, retryable)) {
+                return;
+            }
+
+            if (callback != null) {
+                try {
+                    callback.onComplete(result);
+                } catch (Exception e) {
+                    logger.error("Request callback failed", e);
+                }
+            }
+        }
+
+        /**
+         * @return true if a retry was scheduled or the task was cancelled, false if the task completed
+         */
+        private synchronized boolean scheduleRetry(@Nullable T result, boolean retryable) {
+            if (cancelled) {
+                return true;
+            }
+            response = result;
+            long delayMillis = retryDelayMillis(result, retryable, attempts, lastDelayMillis, deadline, policy, logger);
+            if (delayMillis < 0) {
+                complete();
+                return false;
+            }
+            lastDelayMillis = delayMillis;
+
+            pending = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    submit();
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+            return true;
+        }
+
+        // called while holding the lock
+        private void complete() {
+            pending = null;
+            done.countDown();
+        }
+
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+            if (cancelled || done.getCount() == 0) {
+                return false;
+            }
+            cancelled = true;
+            if (pending != null) {
+                pending.cancel(mayInterruptIfRunning);
+                pending = null;
+            }
+            done.countDown();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            done.await();
+            return result();
+        }
+
+        @Override
+        public T get(long timeout, @NonNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return result();
+        }
+
+        private synchronized T result() {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            return response;
+        }
+    }
+
+    static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(@NonNull String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
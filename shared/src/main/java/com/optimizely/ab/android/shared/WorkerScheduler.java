@@ -15,19 +15,28 @@
  ***************************************************************************/
 package com.optimizely.ab.android.shared;
 
+import android.app.ActivityManager;
 import android.content.Context;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import androidx.work.BackoffPolicy;
 import androidx.work.Constraints;
 import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
 import androidx.work.NetworkType;
 import androidx.work.OneTimeWorkRequest;
 import androidx.work.Operation;
+import androidx.work.OutOfQuotaPolicy;
 import androidx.work.PeriodicWorkRequest;
 import androidx.work.WorkManager;
 import androidx.work.WorkRequest;
 
 import java.util.AbstractMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -40,6 +49,11 @@ import java.util.concurrent.TimeUnit;
 public class WorkerScheduler {
     // when true, work requested only when connection is available.
     public static boolean requestOnlyWhenConnected = true;
+    // when true, callers may run their work in process while the app is in the foreground (see runInProcess).
+    public static boolean runInProcessWhenForeground = true;
+
+    // runs in-process work, one task at a time
+    @Nullable private static ExecutorService inProcessExecutor;
 
     /**
      * Unschedule a scheduled service for a given worker id
@@ -94,11 +108,183 @@ public class WorkerScheduler {
      * @return An (WorkRequest, Operation) that can be used for tracing work state
      */
     public static AbstractMap.SimpleEntry<WorkRequest, Operation> startService(Context context, String workerId, Class clazz, Data data, Long retryInterval) {
+        WorkRequest workRequest = buildOneTimeWorkRequest(workerId, clazz, data, retryInterval, 0, false);
+        Operation operation = WorkManager.getInstance(context).enqueue(workRequest);
+
+        return new AbstractMap.SimpleEntry<>(workRequest, operation);
+    }
+
+    /**
+     * Start a one-time service, running no earlier than the given delay.
+     *
+     * @param context - application context
+     * @param workerId - the tag as well as unique identifier
+     * @param clazz - worker class
+     * @param data - input data for the worker
+     * @param retryInterval - the dispatch retry interval in milli-seconds
+     * @param initialDelay - the delay before the work runs in milli-seconds
+     * @return An (WorkRequest, Operation) that can be used for tracing work state
+     * @see #startService(Context, String, Class, Data, Long)
+     */
+    public static AbstractMap.SimpleEntry<WorkRequest, Operation> startService(Context context, String workerId, Class clazz, Data data, Long retryInterval, long initialDelay) {
+        WorkRequest workRequest = buildOneTimeWorkRequest(workerId, clazz, data, retryInterval, initialDelay, false);
+        Operation operation = WorkManager.getInstance(context).enqueue(workRequest);
+
+        return new AbstractMap.SimpleEntry<>(workRequest, operation);
+    }
+
+    /**
+     * Start a one-time service as expedited work where it does not need a foreground service.
+     * <p>
+     * Expedited work runs as soon as its constraints are met instead of waiting for the scheduler.  See
+     * {@link #startExpeditedUniqueService(Context, String, String, Class, Data, Long, ExistingWorkPolicy)} for the
+     * versions and quota it is used with.
+     *
+     * @param context - application context
+     * @param workerId - the tag as well as unique identifier
+     * @param clazz - worker class
+     * @param data - input data for the worker
+     * @param retryInterval - the dispatch retry interval in milli-seconds
+     * @return An (WorkRequest, Operation) that can be used for tracing work state
+     */
+    public static AbstractMap.SimpleEntry<WorkRequest, Operation> startExpeditedService(Context context, String workerId, Class clazz, Data data, Long retryInterval) {
+        WorkRequest workRequest = buildOneTimeWorkRequest(workerId, clazz, data, retryInterval, 0, isExpeditedSupported());
+        Operation operation = WorkManager.getInstance(context).enqueue(workRequest);
+
+        return new AbstractMap.SimpleEntry<>(workRequest, operation);
+    }
+
+    /**
+     * Start a one-time service under a unique work name, so that repeated requests coalesce into one work.
+     * <p>
+     * With {@link ExistingWorkPolicy#KEEP} a request is dropped while a work with the same name is pending or running.
+     * A running work may already have read what the request was for, so workers draining a persistent queue
+     * should use {@link ExistingWorkPolicy#APPEND_OR_REPLACE} once the pending work has started.
+     *
+     * @param context - application context
+     * @param uniqueWorkName - the unique name of the work
+     * @param workerId - the tag used to cancel the work
+     * @param clazz - worker class
+     * @param data - input data for the worker
+     * @param retryInterval - the dispatch retry interval in milli-seconds
+     * @param existingWorkPolicy - what to do when a work with the same name exists
+     * @return An (WorkRequest, Operation) that can be used for tracing work state
+     */
+    public static AbstractMap.SimpleEntry<WorkRequest, Operation> startUniqueService(Context context, String uniqueWorkName, String workerId, Class clazz, Data data, Long retryInterval, ExistingWorkPolicy existingWorkPolicy) {
+        return startUniqueService(context, uniqueWorkName, workerId, clazz, data, retryInterval, existingWorkPolicy, 0);
+    }
+
+    /**
+     * Start a one-time service under a unique work name, running no earlier than the given delay.
+     * <p>
+     * With {@link ExistingWorkPolicy#KEEP} requests made during the delay coalesce into the pending work,
+     * so the delay sets how often the work runs while requests keep coming.
+     *
+     * @param context - application context
+     * @param uniqueWorkName - the unique name of the work
+     * @param workerId - the tag used to cancel the work
+     * @param clazz - worker class
+     * @param data - input data for the worker
+     * @param retryInterval - the dispatch retry interval in milli-seconds
+     * @param existingWorkPolicy - what to do when a work with the same name exists
+     * @param initialDelay - the delay before the work runs in milli-seconds
+     * @return An (WorkRequest, Operation) that can be used for tracing work state
+     * @see #startUniqueService(Context, String, String, Class, Data, Long, ExistingWorkPolicy)
+     */
+    public static AbstractMap.SimpleEntry<WorkRequest, Operation> startUniqueService(Context context, String uniqueWorkName, String workerId, Class clazz, Data data, Long retryInterval, ExistingWorkPolicy existingWorkPolicy, long initialDelay) {
+        OneTimeWorkRequest workRequest = buildOneTimeWorkRequest(workerId, clazz, data, retryInterval, initialDelay, false);
+        Operation operation = WorkManager.getInstance(context).enqueueUniqueWork(uniqueWorkName, existingWorkPolicy, workRequest);
+
+        return new AbstractMap.SimpleEntry<WorkRequest, Operation>(workRequest, operation);
+    }
+
+    /**
+     * Start a one-time service under a unique work name, as expedited work where it does not need a foreground
+     * service.
+     * <p>
+     * Expedited work runs as soon as its constraints are met instead of waiting for a maintenance window.  It is
+     * used on Android 12+ only, where it is an expedited job: earlier versions run expedited work in a foreground
+     * service with a notification, so a regular work is requested there.  Work requested when the app is out of
+     * expedited quota runs as regular work.
+     *
+     * @param context - application context
+     * @param uniqueWorkName - the unique name of the work
+     * @param workerId - the tag used to cancel the work
+     * @param clazz - worker class
+     * @param data - input data for the worker
+     * @param retryInterval - the dispatch retry interval in milli-seconds
+     * @param existingWorkPolicy - what to do when a work with the same name exists
+     * @return An (WorkRequest, Operation) that can be used for tracing work state
+     */
+    public static AbstractMap.SimpleEntry<WorkRequest, Operation> startExpeditedUniqueService(Context context, String uniqueWorkName, String workerId, Class clazz, Data data, Long retryInterval, ExistingWorkPolicy existingWorkPolicy) {
+        OneTimeWorkRequest workRequest = buildOneTimeWorkRequest(workerId, clazz, data, retryInterval, 0, isExpeditedSupported());
+        Operation operation = WorkManager.getInstance(context).enqueueUniqueWork(uniqueWorkName, existingWorkPolicy, workRequest);
+
+        return new AbstractMap.SimpleEntry<WorkRequest, Operation>(workRequest, operation);
+    }
+
+    /**
+     * Tells if work can run in process instead of through WorkManager: the app is in the foreground, so the
+     * process is not about to be frozen, and the device is connected (when work is requested only when connected).
+     *
+     * @param context - application context
+     * @return true if {@link #runInProcess(Runnable)} can be used
+     */
+    public static boolean canRunInProcess(@NonNull Context context) {
+        if (!runInProcessWhenForeground || !isAppInForeground()) {
+            return false;
+        }
+        return !requestOnlyWhenConnected || NetworkMonitor.getInstance(context).getNetworkState().isConnected();
+    }
+
+    /**
+     * Run a task on the SDK thread for in-process work.
+     * <p>
+     * Nothing persists the task: it must work from persistent state, and request a work to retry in the
+     * background when it fails.
+     *
+     * @param task - the task
+     */
+    public static void runInProcess(@NonNull Runnable task) {
+        getInProcessExecutor().execute(task);
+    }
+
+    /**
+     * @return true if the app has a visible activity or a foreground service
+     */
+    public static boolean isAppInForeground() {
+        ActivityManager.RunningAppProcessInfo processInfo = new ActivityManager.RunningAppProcessInfo();
+        ActivityManager.getMyMemoryState(processInfo);
+        return processInfo.importance <= ActivityManager.RunningAppProcessInfo.IMPORTANCE_VISIBLE;
+    }
+
+    private static synchronized ExecutorService getInProcessExecutor() {
+        if (inProcessExecutor == null) {
+            inProcessExecutor = Executors.newSingleThreadExecutor(new RetryScheduler.DaemonThreadFactory("optly-dispatch"));
+        }
+        return inProcessExecutor;
+    }
+
+    /**
+     * @return true on Android 12+, where expedited work is an expedited job rather than a foreground service
+     */
+    private static boolean isExpeditedSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.S;
+    }
+
+    private static OneTimeWorkRequest buildOneTimeWorkRequest(String workerId, Class clazz, Data data, Long retryInterval, long initialDelay, boolean expedited) {
         // Create a WorkRequest for your Worker and sending it input
         WorkRequest.Builder workRequestBuilder = new OneTimeWorkRequest.Builder(clazz)
                 .setInputData(data)
                 .addTag(workerId);
 
+        if (expedited) {
+            // expedited work cannot be delayed
+            workRequestBuilder.setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST);
+        } else if (initialDelay > 0) {
+            workRequestBuilder.setInitialDelay(initialDelay, TimeUnit.MILLISECONDS);
+        }
+
         if (requestOnlyWhenConnected) {
             // requests only when connection is available (to control network connection failures)
             Constraints constraints = new Constraints.Builder()
@@ -115,10 +301,7 @@ public class WorkerScheduler {
                     TimeUnit.MILLISECONDS);
         }
 
-        WorkRequest workRequest = workRequestBuilder.build();
-        Operation operation = WorkManager.getInstance(context).enqueue(workRequest);
-
-        return new AbstractMap.SimpleEntry<>(workRequest, operation);
+        return (OneTimeWorkRequest) workRequestBuilder.build();
     }
 
 }
@@ -0,0 +1,157 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/**
+ * Compares {@link Cache} loads and exists checks with the line by line reads and file listing it replaced.
+ * Ignored by default, remove the {@link Ignore} to print the timings.
+ */
+@Ignore("benchmark")
+public class CacheBenchmarkTest {
+
+    private static final int OTHER_FILES = 50;
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int ITERATIONS = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Context context;
+    private Cache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        final File filesDir = folder.getRoot();
+        context = mock(Context.class);
+        when(context.getFilesDir()).thenReturn(filesDir);
+        when(context.fileList()).thenAnswer(invocation -> filesDir.list());
+        when(context.openFileInput(anyString())).thenAnswer(invocation ->
+                new FileInputStream(new File(filesDir, (String) invocation.getArgument(0))));
+        when(context.openFileOutput(anyString(), anyInt())).thenAnswer(invocation ->
+                new FileOutputStream(new File(filesDir, (String) invocation.getArgument(0))));
+        when(context.deleteFile(anyString())).thenAnswer(invocation ->
+                new File(filesDir, (String) invocation.getArgument(0)).delete());
+        cache = new Cache(context, LoggerFactory.getLogger(Cache.class));
+
+        for (int i = 0; i < OTHER_FILES; i++) {
+            assertTrue(new File(filesDir, "other-" + i + ".json").createNewFile());
+        }
+    }
+
+    @Test
+    public void load() {
+        for (int size : new int[]{10 * 1024, 200 * 1024, 2 * 1024 * 1024}) {
+            final String filename = "optly-data-file-" + size + ".json";
+            assertTrue(cache.save(filename, datafile(size)));
+
+            long old = time(new Runnable() {
+                @Override
+                public void run() {
+                    assertNotNull(loadLines(filename));
+                }
+            });
+            long read = time(new Runnable() {
+                @Override
+                public void run() {
+                    assertNotNull(cache.load(filename));
+                }
+            });
+            System.out.printf("load %dKB: old %dus, read %dus%n", size / 1024, old / 1000, read / 1000);
+        }
+    }
+
+    @Test
+    public void exists() {
+        final String filename = "optly-data-file.json";
+        assertTrue(cache.save(filename, datafile(1024)));
+
+        long old = time(new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(Arrays.asList(context.fileList()).contains(filename));
+            }
+        });
+        long exists = time(new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(cache.exists(filename));
+            }
+        });
+        System.out.printf("exists: old %dns, new %dns%n", old, exists);
+    }
+
+    /**
+     * @return the mean nanoseconds of a run after a warmup
+     */
+    private static long time(Runnable runnable) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runnable.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            runnable.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    // the load Cache used before it read files with a single sized read
+    private String loadLines(String filename) {
+        try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(context.openFileInput(filename)))) {
+            StringBuilder sb = new StringBuilder();
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                sb.append(line);
+            }
+            return sb.toString();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String datafile(int size) {
+        StringBuilder sb = new StringBuilder("{\n  \"experiments\": [\n");
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append("    {\"id\": \"").append(i).append("\", \"key\": \"experiment_").append(i)
+                    .append("\", \"status\": \"Running\"},\n");
+        }
+        return sb.append("    {}\n  ]\n}\n").toString();
+    }
+}
@@ -0,0 +1,161 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests {@link Cache} file io against a temporary folder
+ */
+public class CacheIOTest {
+
+    private static final String FILENAME = "optly-data-file-1.json";
+    private static final String DATAFILE = "{\n  \"revision\": \"1\",\n  \"name\": \"café ☕\"\n}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Context context;
+    private Cache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        final File filesDir = folder.getRoot();
+        context = mock(Context.class);
+        when(context.getFilesDir()).thenReturn(filesDir);
+        when(context.openFileInput(anyString())).thenAnswer(invocation ->
+                new FileInputStream(new File(filesDir, (String) invocation.getArgument(0))));
+        when(context.openFileOutput(anyString(), anyInt())).thenAnswer(invocation ->
+                new FileOutputStream(new File(filesDir, (String) invocation.getArgument(0))));
+        when(context.deleteFile(anyString())).thenAnswer(invocation ->
+                new File(filesDir, (String) invocation.getArgument(0)).delete());
+        cache = new Cache(context, LoggerFactory.getLogger(Cache.class));
+    }
+
+    @Test
+    public void loadKeepsNewlinesAndDecodesUtf8() {
+        assertTrue(cache.save(FILENAME, DATAFILE));
+
+        assertEquals(DATAFILE, cache.load(FILENAME));
+    }
+
+    @Test
+    public void existsDoesNotListFiles() {
+        assertFalse(cache.exists(FILENAME));
+        assertTrue(cache.save(FILENAME, DATAFILE));
+        assertTrue(cache.exists(FILENAME));
+
+        verify(context, never()).fileList();
+    }
+
+    @Test
+    public void truncatedFileFailsChecksum() throws Exception {
+        assertTrue(cache.save(FILENAME, DATAFILE, true));
+        File file = new File(folder.getRoot(), FILENAME);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(DATAFILE.substring(0, 10).getBytes("UTF-8"));
+        }
+
+        assertNull(cache.load(FILENAME, true));
+    }
+
+    @Test
+    public void killedSaveKeepsPreviousDataValid() throws Exception {
+        assertTrue(cache.save(FILENAME, DATAFILE, true));
+        final File filesDir = folder.getRoot();
+        final File otherDir = folder.newFolder();
+        final File sidecar = new File(filesDir, FILENAME + ".crc");
+        // once the checksum is renamed, the data rename does not find its temp file, like a kill between the two
+        when(context.getFilesDir()).thenAnswer(invocation ->
+                Files.readAllLines(sidecar.toPath()).size() > 1 ? otherDir : filesDir);
+
+        assertFalse(cache.save(FILENAME, "{\"revision\": \"2\"}", true));
+        when(context.getFilesDir()).thenReturn(filesDir);
+
+        assertEquals(DATAFILE, cache.load(FILENAME, true));
+    }
+
+    @Test
+    public void completedSaveOnlyAcceptsNewData() throws Exception {
+        String datafile = "{\"revision\": \"2\"}";
+        assertTrue(cache.save(FILENAME, DATAFILE, true));
+        assertTrue(cache.save(FILENAME, datafile, true));
+        assertEquals(datafile, cache.load(FILENAME, true));
+
+        try (FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), FILENAME))) {
+            out.write(DATAFILE.getBytes("UTF-8"));
+        }
+        assertNull(cache.load(FILENAME, true));
+    }
+
+    @Test
+    public void concurrentSavesKeepDataAndChecksumMatching() throws Exception {
+        final AtomicBoolean failed = new AtomicBoolean();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final String datafile = "{\"revision\": \"" + i + "\"}";
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 20; j++) {
+                    if (!cache.save(FILENAME, datafile, true)) {
+                        failed.set(true);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(failed.get());
+        assertNotNull(cache.load(FILENAME, true));
+        for (String name : folder.getRoot().list()) {
+            assertFalse(name, name.endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    public void emptyFileLoadsEmpty() throws Exception {
+        new File(folder.getRoot(), FILENAME).createNewFile();
+
+        assertEquals("", cache.load(FILENAME));
+    }
+}
@@ -0,0 +1,171 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+
+/**
+ * Tests for {@link CircuitBreaker} and {@link CircuitBreakerRegistry}
+ */
+public class CircuitBreakerTest {
+
+    private static final String ENDPOINT = "https://logx.optimizely.com";
+
+    private long now;
+    private CircuitBreaker.Listener listener;
+    private CircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        listener = mock(CircuitBreaker.Listener.class);
+        breaker = new CircuitBreaker(ENDPOINT, 10, 4, 50, 1000, listener) {
+            @Override
+            long now() {
+                return now;
+            }
+        };
+    }
+
+    private void record(@NonNull CircuitBreaker breaker, boolean... results) {
+        for (boolean success : results) {
+            assertTrue(breaker.allowRequest());
+            breaker.recordResult(success);
+        }
+    }
+
+    @Test
+    public void staysClosedBelowMinRequests() {
+        record(breaker, false, false, false);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(100, breaker.getFailureRate());
+    }
+
+    @Test
+    public void staysClosedUnderThreshold() {
+        record(breaker, true, true, true, false, true, false);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(33, breaker.getFailureRate());
+    }
+
+    @Test
+    public void opensAtThresholdAndRejects() {
+        record(breaker, true, false, true, false);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+        assertEquals(2, breaker.getRejectedCount());
+        verify(listener).onStateChanged(ENDPOINT, CircuitBreaker.State.CLOSED, CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void halfOpenTrialCloses() {
+        record(breaker, false, false, false, false);
+        now += 1000;
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // only one trial request at a time
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordResult(true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getFailureRate());
+        verify(listener).onStateChanged(ENDPOINT, CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN);
+        verify(listener).onStateChanged(ENDPOINT, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void halfOpenTrialFailureReopens() {
+        record(breaker, false, false, false, false);
+        now += 999;
+        assertFalse(breaker.allowRequest());
+        now += 1;
+
+        assertTrue(breaker.allowRequest());
+        breaker.recordResult(false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        now += 1000;
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void windowForgetsOldResults() {
+        record(breaker, false, true, true, true);
+        record(breaker, true, true, true, true, true, true, true, true, true);
+
+        assertEquals(0, breaker.getFailureRate());
+        record(breaker, false, false, false, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        record(breaker, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void pauseOpensUntilRetryAfter() {
+        breaker.pause(5000);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(5000, breaker.getRemainingOpenMillis());
+        now += 1000;
+        assertFalse(breaker.allowRequest());
+        assertEquals(4000, breaker.getRemainingOpenMillis());
+
+        now += 4000;
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(0, breaker.getRemainingOpenMillis());
+    }
+
+    @Test
+    public void pauseExtendsButDoesNotShortenOpen() {
+        record(breaker, false, false, false, false);
+        breaker.pause(100);
+        assertEquals(1000, breaker.getRemainingOpenMillis());
+
+        breaker.pause(3000);
+        assertEquals(3000, breaker.getRemainingOpenMillis());
+    }
+
+    @Test
+    public void registryKeysByHost() throws Exception {
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry();
+        CircuitBreaker events = registry.getBreaker(new URL("https://logx.optimizely.com/v1/events"));
+
+        assertSame(events, registry.getBreaker(new URL("https://logx.optimizely.com/v1/other")));
+        assertNotSame(events, registry.getBreaker(new URL("https://api.zaius.com/v3/events")));
+        assertEquals(CircuitBreaker.State.CLOSED, registry.getStates().get("https://logx.optimizely.com"));
+        assertEquals(2, registry.getStates().size());
+    }
+}
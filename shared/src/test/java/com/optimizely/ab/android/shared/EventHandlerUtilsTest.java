@@ -1,11 +1,35 @@
 package com.optimizely.ab.android.shared;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
 public class EventHandlerUtilsTest {
 
+    private static final String IMPRESSION = "{\"account_id\":\"10367498574\",\"visitors\":[{\"attributes\":[{\"entity_id\":"
+            + "\"$opt_bot_filtering\",\"key\":\"$opt_bot_filtering\",\"type\":\"custom\",\"value\":true}],\"snapshots\":"
+            + "[{\"decisions\":[{\"campaign_id\":\"20460082357\",\"experiment_id\":\"20457542328\",\"variation_id\":"
+            + "\"20446491735\",\"metadata\":{\"flag_key\":\"checkout_flow\",\"rule_key\":\"checkout_test\",\"rule_type\":"
+            + "\"experiment\",\"variation_key\":\"variation_b\",\"enabled\":true},\"is_campaign_holdback\":false}],"
+            + "\"events\":[{\"entity_id\":\"20460082357\",\"key\":\"campaign_activated\",\"timestamp\":1760775600000,"
+            + "\"uuid\":\"6c3b3a1e-8f4d-4c1e-9a55-2f0b7d7e1c42\"}]}],\"visitor_id\":\"user_8842\"}],\"anonymize_ip\":true,"
+            + "\"client_name\":\"android-sdk\",\"client_version\":\"5.1.0\",\"project_id\":\"10431130345\","
+            + "\"enrich_decisions\":true,\"revision\":\"241\"}";
+
     @Test
     public void compressAndDecompress() throws Exception {
         String str = makeRandomString(1000);
@@ -17,6 +41,137 @@ public class EventHandlerUtilsTest {
         assertEquals(str, decompressed);
     }
 
+    @Test
+    public void compressAndDecompressUtf8() throws Exception {
+        String str = "{\"attributes\":[{\"value\":\"\u00e9t\u00e9 \u6771\u4eac\"}]}";
+
+        assertEquals(str, EventHandlerUtils.decompress(EventHandlerUtils.compress(str)));
+    }
+
+    @Test
+    public void compressAndDecompressStreams() throws Exception {
+        byte[] data = makeRandomString(200000).getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        EventHandlerUtils.compress(new ByteArrayInputStream(data), compressed);
+        assertArrayEquals(data, EventHandlerUtils.decompress(compressed.toByteArray()));
+
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        EventHandlerUtils.decompress(new ByteArrayInputStream(EventHandlerUtils.compress(data)), decompressed);
+        assertArrayEquals(data, decompressed.toByteArray());
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void decompressTruncated() throws Exception {
+        byte[] compressed = EventHandlerUtils.compress(makeRandomString(10000).getBytes(StandardCharsets.UTF_8));
+        byte[] truncated = new byte[compressed.length / 2];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+
+        EventHandlerUtils.decompress(truncated);
+    }
+
+    @Test
+    public void dictionaryImprovesSmallPayloads() throws Exception {
+        byte[] data = IMPRESSION.getBytes(StandardCharsets.UTF_8);
+
+        byte[] withDictionary = EventHandlerUtils.compress(data);
+        EventHandlerUtils.DICTIONARY_ENABLED = false;
+        byte[] withoutDictionary;
+        try {
+            withoutDictionary = EventHandlerUtils.compress(data);
+        } finally {
+            EventHandlerUtils.DICTIONARY_ENABLED = true;
+        }
+        System.out.println("Compressed impression: " + data.length + " -> " + withoutDictionary.length
+                + " bytes, " + withDictionary.length + " bytes with dictionary");
+
+        assertTrue(withDictionary.length < withoutDictionary.length * 0.7);
+        assertArrayEquals(data, EventHandlerUtils.decompress(withDictionary));
+        assertArrayEquals(data, EventHandlerUtils.decompress(withoutDictionary));
+    }
+
+    @Test
+    public void dictionaryStreams() throws Exception {
+        byte[] data = IMPRESSION.getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        EventHandlerUtils.compress(new ByteArrayInputStream(data), compressed);
+        assertArrayEquals(data, EventHandlerUtils.decompress(compressed.toByteArray()));
+
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        EventHandlerUtils.decompress(new ByteArrayInputStream(EventHandlerUtils.compress(data)), decompressed);
+        assertArrayEquals(data, decompressed.toByteArray());
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void unknownDictionary() throws Exception {
+        Deflater deflater = new Deflater();
+        deflater.setDictionary("unknown".getBytes(StandardCharsets.UTF_8));
+        deflater.setInput(IMPRESSION.getBytes(StandardCharsets.UTF_8));
+        deflater.finish();
+        byte[] buffer = new byte[4096];
+        int length = deflater.deflate(buffer);
+        deflater.end();
+        byte[] compressed = new byte[length];
+        System.arraycopy(buffer, 0, compressed, 0, length);
+
+        EventHandlerUtils.decompress(compressed);
+    }
+
+    @Test(timeout=30000)
+    public void concurrentCallsKeepABoundedPool() throws Exception {
+        final byte[] data = IMPRESSION.getBytes(StandardCharsets.UTF_8);
+        final AtomicBoolean failed = new AtomicBoolean();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            if (!Arrays.equals(data, EventHandlerUtils.decompress(EventHandlerUtils.compress(data)))) {
+                                failed.set(true);
+                            }
+                        }
+                    } catch (Exception e) {
+                        failed.set(true);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(failed.get());
+        assertTrue(EventHandlerUtils.getPooledCodecCount() <= 2);
+    }
+
+    @Test
+    public void measureAllocations() throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threadMXBean;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        byte[] body = makeRandomString(1000).getBytes(StandardCharsets.UTF_8);
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            EventHandlerUtils.decompress(EventHandlerUtils.compress(body));
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long start = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < count; i++) {
+            EventHandlerUtils.decompress(EventHandlerUtils.compress(body));
+        }
+        long allocated = (allocations.getThreadAllocatedBytes(threadId) - start) / count;
+        System.out.println("Allocations: " + allocated + " bytes per compress and decompress of 1KB");
+        // codecs and buffers are reused, only the results are allocated (a new 32KB buffer was allocated per call)
+        assertTrue(allocated < 8 * 1024);
+    }
+
     @Test(timeout=30000)
     public void measureCompressionDelay() throws Exception {
         int maxEventSize = 100000;  // 100KB (~100 attributes)
@@ -0,0 +1,113 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link NetworkMonitor}
+ */
+public class NetworkMonitorTest {
+
+    private static final NetworkState WIFI = new NetworkState(NetworkState.Transport.WIFI, true, false, false, 0);
+    private static final NetworkState CELLULAR = new NetworkState(NetworkState.Transport.CELLULAR, true, true, false, 0);
+    // connected behind a captive portal
+    private static final NetworkState UNVALIDATED = new NetworkState(NetworkState.Transport.WIFI, false, false, false, 0);
+
+    private NetworkMonitor monitor;
+    private final List<NetworkState> notified = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        monitor = new NetworkMonitor(null, LoggerFactory.getLogger(NetworkMonitor.class));
+        monitor.addListener(new NetworkMonitor.Listener() {
+            @Override
+            public void onInternetAvailable(@NonNull NetworkState state) {
+                notified.add(state);
+            }
+        });
+    }
+
+    @Test
+    public void notifiesWhenInternetComesBack() {
+        monitor.setState(WIFI);
+        monitor.setState(NetworkState.DISCONNECTED);
+        monitor.setState(CELLULAR);
+
+        assertEquals(2, notified.size());
+        assertEquals(WIFI, notified.get(0));
+        assertEquals(CELLULAR, notified.get(1));
+    }
+
+    @Test
+    public void notifiesOnValidation() {
+        monitor.setState(UNVALIDATED);
+        assertEquals(0, notified.size());
+
+        monitor.setState(WIFI);
+        assertEquals(1, notified.size());
+    }
+
+    @Test
+    public void doesNotNotifyWhileConnected() {
+        monitor.setState(WIFI);
+        monitor.setState(CELLULAR);
+        monitor.setState(WIFI);
+
+        assertEquals(1, notified.size());
+    }
+
+    @Test
+    public void listenerFailureDoesNotStopOthers() {
+        monitor = new NetworkMonitor(null, LoggerFactory.getLogger(NetworkMonitor.class));
+        monitor.addListener(new NetworkMonitor.Listener() {
+            @Override
+            public void onInternetAvailable(@NonNull NetworkState state) {
+                throw new IllegalStateException("WorkManager is not initialized");
+            }
+        });
+        monitor.addListener(new NetworkMonitor.Listener() {
+            @Override
+            public void onInternetAvailable(@NonNull NetworkState state) {
+                notified.add(state);
+            }
+        });
+
+        monitor.setState(WIFI);
+        assertEquals(1, notified.size());
+    }
+
+    @Test
+    public void unmonitoredWithoutConnectivityManager() {
+        assertFalse(monitor.addListener(new NetworkMonitor.Listener() {
+            @Override
+            public void onInternetAvailable(@NonNull NetworkState state) {
+            }
+        }));
+        assertEquals(NetworkState.DISCONNECTED, monitor.getNetworkState());
+    }
+}
@@ -0,0 +1,132 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests {@link PooledHttpTransport} against a local http server
+ */
+public class PooledHttpTransportTest {
+
+    private HttpServer server;
+    private URL url;
+    private final List<Integer> clientPorts = Collections.synchronizedList(new ArrayList<Integer>());
+    private volatile int status = 200;
+    private volatile byte[] response = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+    private PooledHttpTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", (HttpExchange exchange) -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            exchange.sendResponseHeaders(status, response.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(response);
+            out.close();
+        });
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        transport = new PooledHttpTransport();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void request() throws Exception {
+        HttpURLConnection connection = transport.open(url);
+        connection.getResponseCode();
+        transport.release(connection, true);
+    }
+
+    @Test
+    public void releaseReusesConnection() throws Exception {
+        request();
+        request();
+
+        assertEquals(2, clientPorts.size());
+        assertEquals(clientPorts.get(0), clientPorts.get(1));
+    }
+
+    @Test
+    public void releaseReusesConnectionAfterErrorResponse() throws Exception {
+        status = 500;
+        request();
+        request();
+
+        assertEquals(2, clientPorts.size());
+        assertEquals(clientPorts.get(0), clientPorts.get(1));
+    }
+
+    @Test
+    public void releaseClosesLargeResponse() throws Exception {
+        response = new byte[PooledHttpTransport.MAX_DRAIN_BYTES * 2];
+        request();
+        request();
+
+        assertEquals(2, clientPorts.size());
+        assertNotEquals(clientPorts.get(0), clientPorts.get(1));
+    }
+
+    @Test
+    public void releaseDisconnectsWithoutResponse() {
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+
+        transport.release(connection, false);
+
+        verify(connection).disconnect();
+    }
+
+    @Test
+    public void releaseKeepsReadResponse() throws Exception {
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        InputStream in = mock(InputStream.class);
+        when(connection.getInputStream()).thenReturn(in);
+        when(in.read(any(byte[].class))).thenThrow(new IOException("closed"));
+
+        transport.release(connection, true);
+
+        verify(connection, never()).disconnect();
+    }
+}
@@ -0,0 +1,117 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Tests {@link RequestBodyWriter} against a local http server
+ */
+public class RequestBodyWriterTest {
+
+    private HttpServer server;
+    private URL url;
+    private volatile String receivedEncoding;
+    private volatile String receivedBody;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/events", (HttpExchange exchange) -> {
+            receivedEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            InputStream in = exchange.getRequestBody();
+            if ("gzip".equals(receivedEncoding)) {
+                in = new GZIPInputStream(in);
+            }
+            receivedBody = new String(readAll(in), StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/events");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private int post(String body, int gzipThreshold) throws Exception {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        try {
+            urlConnection.setRequestMethod("POST");
+            urlConnection.setDoOutput(true);
+            RequestBodyWriter.write(urlConnection, body, gzipThreshold);
+            return urlConnection.getResponseCode();
+        } finally {
+            urlConnection.disconnect();
+        }
+    }
+
+    @Test
+    public void writeGzipOverThreshold() throws Exception {
+        String body = EventHandlerUtilsTest.makeRandomString(20000) + "\u00e9\u4e2d";
+
+        assertEquals(204, post(body, 1000));
+        assertEquals("gzip", receivedEncoding);
+        assertEquals(body, receivedBody);
+    }
+
+    @Test
+    public void writePlainUnderThreshold() throws Exception {
+        String body = "{\"visitors\":[]}";
+
+        assertEquals(204, post(body, 1000));
+        assertNull(receivedEncoding);
+        assertEquals(body, receivedBody);
+    }
+
+    @Test
+    public void writePlainWhenDisabled() throws Exception {
+        String body = EventHandlerUtilsTest.makeRandomString(20000);
+
+        assertEquals(204, post(body, RequestBodyWriter.GZIP_DISABLED));
+        assertNull(receivedEncoding);
+        assertEquals(body, receivedBody);
+    }
+
+    private static byte[] readAll(InputStream in) throws java.io.IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,87 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ResponsePolicy}
+ */
+public class ResponsePolicyTest {
+
+    // Sun, 06 Nov 1994 08:49:37 GMT
+    private static final long NOW = 784111777000L;
+
+    @Test
+    public void classify() {
+        assertEquals(ResponsePolicy.Action.SUCCESS, ResponsePolicy.classify(200));
+        assertEquals(ResponsePolicy.Action.SUCCESS, ResponsePolicy.classify(204));
+        assertEquals(ResponsePolicy.Action.SUCCESS, ResponsePolicy.classify(304));
+        assertEquals(ResponsePolicy.Action.BACK_OFF, ResponsePolicy.classify(429));
+        assertEquals(ResponsePolicy.Action.BACK_OFF, ResponsePolicy.classify(503));
+        assertEquals(ResponsePolicy.Action.FAIL, ResponsePolicy.classify(400));
+        assertEquals(ResponsePolicy.Action.FAIL, ResponsePolicy.classify(413));
+        assertEquals(ResponsePolicy.Action.RETRY, ResponsePolicy.classify(408));
+        assertEquals(ResponsePolicy.Action.RETRY, ResponsePolicy.classify(500));
+        assertEquals(ResponsePolicy.Action.RETRY, ResponsePolicy.classify(302));
+    }
+
+    @Test
+    public void invalidRequests() {
+        assertTrue(ResponsePolicy.isInvalidRequest(400));
+        assertTrue(ResponsePolicy.isInvalidRequest(413));
+        assertTrue(ResponsePolicy.isInvalidRequest(422));
+        assertFalse(ResponsePolicy.isInvalidRequest(401));
+        assertFalse(ResponsePolicy.isInvalidRequest(403));
+        assertFalse(ResponsePolicy.isInvalidRequest(404));
+        assertFalse(ResponsePolicy.isInvalidRequest(500));
+    }
+
+    @Test
+    public void endpointFailures() {
+        assertTrue(ResponsePolicy.isEndpointFailure(500));
+        assertTrue(ResponsePolicy.isEndpointFailure(408));
+        assertFalse(ResponsePolicy.isEndpointFailure(503));
+        assertFalse(ResponsePolicy.isEndpointFailure(400));
+        assertFalse(ResponsePolicy.isEndpointFailure(200));
+    }
+
+    @Test
+    public void parseRetryAfterSeconds() {
+        assertEquals(120000, ResponsePolicy.parseRetryAfterMillis("120", NOW));
+        assertEquals(0, ResponsePolicy.parseRetryAfterMillis(" 0 ", NOW));
+        assertEquals(0, ResponsePolicy.parseRetryAfterMillis("-5", NOW));
+    }
+
+    @Test
+    public void parseRetryAfterDate() {
+        assertEquals(30000, ResponsePolicy.parseRetryAfterMillis("Sun, 06 Nov 1994 08:50:07 GMT", NOW));
+        assertEquals(0, ResponsePolicy.parseRetryAfterMillis("Sun, 06 Nov 1994 08:00:00 GMT", NOW));
+    }
+
+    @Test
+    public void parseRetryAfterDefaultsAndCaps() {
+        assertEquals(ResponsePolicy.DEFAULT_RETRY_AFTER_MILLIS, ResponsePolicy.parseRetryAfterMillis(null, NOW));
+        assertEquals(ResponsePolicy.DEFAULT_RETRY_AFTER_MILLIS, ResponsePolicy.parseRetryAfterMillis("", NOW));
+        assertEquals(ResponsePolicy.DEFAULT_RETRY_AFTER_MILLIS, ResponsePolicy.parseRetryAfterMillis("soon", NOW));
+        assertEquals(ResponsePolicy.MAX_RETRY_AFTER_MILLIS, ResponsePolicy.parseRetryAfterMillis("86400", NOW));
+    }
+}
@@ -0,0 +1,223 @@
+/****************************************************************************
+ * Copyright 2026, Optimizely, Inc. and contributors                        *
+ *                                                                          *
+ * Licensed under the Apache License, Version 2.0 (the "License");          *
+ * you may not use this file except in compliance with the License.         *
+ * You may obtain a copy of the License at                                  *
+ *                                                                          *
+ *    http://www.apache.org/licenses/LICENSE-2.0                            *
+ *                                                                          *
+ * Unless required by applicable law or agreed to in writing, software      *
+ * distributed under the License is distributed on an "AS IS" BASIS,        *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. *
+ * See the License for the specific language governing permissions and      *
+ * limitations under the License.                                           *
+ ***************************************************************************/
+
+package com.optimizely.ab.android.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for {@link RetryScheduler} and {@link RetryPolicy}
+ */
+public class RetrySchedulerTest {
+
+    private ScheduledExecutorService timer;
+    private ExecutorService workers;
+    private RetryScheduler scheduler;
+    private Logger logger;
+
+    @Before
+    public void setUp() {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        workers = Executors.newCachedThreadPool();
+        scheduler = new RetryScheduler(timer, workers);
+        logger = mock(Logger.class);
+    }
+
+    @After
+    public void tearDown() {
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    @Test
+    public void exponentialDelays() {
+        RetryPolicy policy = RetryPolicy.exponential(2, 3);
+        Random random = new Random();
+
+        assertEquals(3, policy.maxRetries);
+        assertEquals(2000, policy.nextDelayMillis(1, 0, random));
+        assertEquals(4000, policy.nextDelayMillis(2, 2000, random));
+        assertEquals(8000, policy.nextDelayMillis(3, 4000, random));
+        assertEquals(0, RetryPolicy.exponential(0, 3).maxRetries);
+    }
+
+    @Test
+    public void decorrelatedJitterDelays() {
+        RetryPolicy policy = RetryPolicy.decorrelatedJitter(10, 100, 1000, 0);
+        Random random = new Random(42);
+
+        long delay = policy.nextDelayMillis(1, 0, random);
+        assertEquals(100, delay);
+        for (int retry = 2; retry < 50; retry++) {
+            long next = policy.nextDelayMillis(retry, delay, random);
+            assertTrue(next >= 100);
+            assertTrue(next <= Math.min(1000, delay * 3));
+            delay = next;
+        }
+    }
+
+    @Test
+    public void retriesUntilSuccess() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final AtomicReference<String> callbackResponse = new AtomicReference<>();
+        final CountDownLatch callbackLatch = new CountDownLatch(1);
+
+        Future<String> future = scheduler.schedule(new Client.Request<String>() {
+            @Override
+            public String execute() {
+                return attempts.incrementAndGet() < 3 ? null : "ok";
+            }
+        }, RetryPolicy.decorrelatedJitter(5, 10, 20, 0), new Client.Callback<String>() {
+            @Override
+            public void onComplete(String response) {
+                callbackResponse.set(response);
+                callbackLatch.countDown();
+            }
+        }, logger);
+
+        assertEquals("ok", future.get(5, TimeUnit.SECONDS));
+        assertTrue(callbackLatch.await(5, TimeUnit.SECONDS));
+        assertEquals("ok", callbackResponse.get());
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void runRetriesOnCallerThread() {
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger attempts = new AtomicInteger();
+
+        String response = RetryScheduler.run(new Client.Request<String>() {
+            @Override
+            public String execute() {
+                assertEquals(caller, Thread.currentThread());
+                return attempts.incrementAndGet() < 3 ? null : "ok";
+            }
+        }, RetryPolicy.decorrelatedJitter(5, 10, 20, 0), logger);
+
+        assertEquals("ok", response);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void runStopsAfterMaxRetries() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        assertNull(RetryScheduler.run(new Client.Request<Boolean>() {
+            @Override
+            public Boolean execute() {
+                attempts.incrementAndGet();
+                throw new RuntimeException("failed");
+            }
+        }, RetryPolicy.decorrelatedJitter(2, 10, 20, 0), logger));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void stopsAfterMaxRetries() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        Future<Boolean> future = scheduler.schedule(new Client.Request<Boolean>() {
+            @Override
+            public Boolean execute() {
+                attempts.incrementAndGet();
+                throw new RuntimeException("failed");
+            }
+        }, RetryPolicy.decorrelatedJitter(2, 10, 20, 0), null, logger);
+
+        assertNull(future.get(5, TimeUnit.SECONDS));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void stopsAtDeadline() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        Future<Boolean> future = scheduler.schedule(new Client.Request<Boolean>() {
+            @Override
+            public Boolean execute() {
+                attempts.incrementAndGet();
+                return Boolean.FALSE;
+            }
+        }, RetryPolicy.decorrelatedJitter(100, 1000, 1000, 500), null, logger);
+
+        assertEquals(Boolean.FALSE, future.get(5, TimeUnit.SECONDS));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void doesNotRetryNotRetryableAttempt() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        Future<Boolean> future = scheduler.schedule(new Client.Request<Boolean>() {
+            @Override
+            public Boolean execute() {
+                attempts.incrementAndGet();
+                return Boolean.FALSE;
+            }
+
+            @Override
+            public boolean isNotRetryable(Boolean response) {
+                return true;
+            }
+        }, RetryPolicy.decorrelatedJitter(5, 10, 20, 0), null, logger);
+
+        assertEquals(Boolean.FALSE, future.get(5, TimeUnit.SECONDS));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void cancelStopsPendingRetry() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final CountDownLatch firstAttempt = new CountDownLatch(1);
+
+        Future<String> future = scheduler.schedule(new Client.Request<String>() {
+            @Override
+            public String execute() {
+                attempts.incrementAndGet();
+                firstAttempt.countDown();
+                return null;
+            }
+        }, RetryPolicy.decorrelatedJitter(5, 200, 200, 0), null, logger);
+
+        assertTrue(firstAttempt.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertTrue(future.isDone());
+        assertFalse(future.cancel(false));
+
+        Thread.sleep(400);
+        assertEquals(1, attempts.get());
+    }
+}
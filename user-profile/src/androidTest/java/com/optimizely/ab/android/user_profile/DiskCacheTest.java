@@ -102,7 +102,7 @@ public class DiskCacheTest {
     @Test
     public void testLoadIOException() throws JSONException {
         cache = mock(Cache.class);
-        when(cache.load(diskCache.getFileName())).thenReturn(null);
+        when(cache.load(diskCache.getFileName(), true)).thenReturn(null);
         diskCache = new UserProfileCache.DiskCache(cache, executor, logger, projectId);
         assertEquals(new JSONObject().toString(), diskCache.load().toString());
         verify(logger).warn("Unable to load user profile cache from disk.");
@@ -136,7 +136,7 @@ public class DiskCacheTest {
     @Test
     public void testSaveIOException() throws JSONException {
         cache = mock(Cache.class);
-        when(cache.save(diskCache.getFileName(), memoryCache.toString())).thenReturn(false);
+        when(cache.save(diskCache.getFileName(), memoryCache.toString(), true)).thenReturn(false);
         diskCache = new UserProfileCache.DiskCache(cache, executor, logger, projectId);
 
         diskCache.save(memoryCache);
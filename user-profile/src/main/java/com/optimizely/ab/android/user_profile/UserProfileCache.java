@@ -211,7 +211,7 @@ class UserProfileCache {
 
         @NonNull
         JSONObject load() throws JSONException {
-            String cacheString = cache.load(getFileName());
+            String cacheString = cache.load(getFileName(), true);
             if (cacheString == null) {
                 logger.warn("Unable to load user profile cache from disk.");
                 return new JSONObject();
@@ -235,7 +235,7 @@ class UserProfileCache {
                     }
 
                     // Write to disk.
-                    boolean saved = cache.save(getFileName(), userProfilesJson.toString());
+                    boolean saved = cache.save(getFileName(), userProfilesJson.toString(), true);
                     if (saved) {
                         logger.info("Saved user profiles to disk.");
                     } else {